@@ -0,0 +1,198 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates positions in bulk, for analysing dumps of game records offline.
+ * <p>
+ * Positions are read one per line, from a file or stdin, in the format of
+ * the regression corpus without the results:
+ * <pre>
+ *   columns rows move move ...
+ * </pre>
+ * where the moves are "x,y" played from the empty board, H first. Each one
+ * is searched the way BlackBoxDomineering2 would search it (exactly up to
+ * 5x4/4x5, heuristically above that) and one CSV row is written per line,
+ * in input order:
+ * <pre>
+ *   line,value,best_move,nodes,micros
+ * </pre>
+ * best_move is quoted, and empty if the game is over. A line that is not a legal
+ * position gets an empty value and a message on stderr.
+ * <p>
+ * Positions are searched in parallel, but only a fixed number are in
+ * flight at once and only their results are kept, so memory stays bounded
+ * however long the input is.
+ * <p>
+ * Usage: java Analyse [file or -] [threads] [heuristic level]
+ */
+public class Analyse {
+
+	private static final int IN_FLIGHT_PER_THREAD = 16; //enough queued work that no thread waits for the reader
+
+	/**
+	 * What a search found out about one position.
+	 */
+	private static class Result {
+		private final long   line;
+		private final String value;
+		private final String best;
+		private final long   nodes;
+		private final long   nanos;
+
+		/**
+		 * @param line  The input line number.
+		 * @param value The value of the position, or "" if it could not be searched.
+		 * @param best  The best move as "x,y", or "" if there is none.
+		 * @param nodes The nodes searched.
+		 * @param nanos The time taken.
+		 */
+		private Result(long line, String value, String best, long nodes, long nanos) {
+			this.line = line;
+			this.value = value;
+			this.best = best;
+			this.nodes = nodes;
+			this.nanos = nanos;
+		}
+
+		@Override
+		public String toString() {
+			return line + "," + value + ",\"" + best + "\"," + nodes + "," + nanos / 1000;
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		String file    = "-";
+		int    threads = Runtime.getRuntime().availableProcessors();
+		int    level   = 0; //0 means the level BlackBoxDomineering2 would use
+		try {
+			if(args.length > 0) {
+				file = args[0];
+			}
+			if(args.length > 1) {
+				threads = Integer.parseInt(args[1]);
+			}
+			if(args.length > 2) {
+				level = Integer.parseInt(args[2]);
+			}
+		}
+		catch(NumberFormatException e) {
+			System.err.println("Usage: java Analyse [file or -] [threads] [heuristic level]");
+			System.exit(1);
+		}
+
+		BufferedReader in  = (file.equals("-")
+				? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+				: Files.newBufferedReader(Paths.get(file)));
+		PrintWriter    out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out,
+				StandardCharsets.UTF_8), 1 << 16));
+		try {
+			analyse(in, out, threads, level);
+		}
+		finally {
+			in.close();
+			out.flush();
+		}
+	}
+
+	/**
+	 * Evaluates every position from a reader.
+	 * @param in      The positions, one per line.
+	 * @param out     Where to write the results.
+	 * @param threads The number of positions to search at once.
+	 * @param level   How deep to search boards too big to solve, or 0 to choose by size.
+	 */
+	public static void analyse(BufferedReader in, PrintWriter out, int threads, int level)
+			throws IOException, InterruptedException {
+		ExecutorService        pool    = Engine.daemons("analyse", threads);
+		Queue<Future<Result>>  pending = new ArrayDeque<Future<Result>>();
+		int                    window  = threads * IN_FLIGHT_PER_THREAD;
+		long                   number  = 0;
+		out.println("line,value,best_move,nodes,micros");
+		try {
+			for(String line = in.readLine(); line != null; line = in.readLine()) {
+				long   n        = ++number;
+				String position = line;
+				if(position.trim().isEmpty() || position.startsWith("#")) {
+					continue;
+				}
+				if(pending.size() >= window) {
+					out.println(await(pending.remove()));
+				}
+				pending.add(pool.submit(() -> evaluate(n, position, level)));
+			}
+			while(!pending.isEmpty()) {
+				out.println(await(pending.remove()));
+			}
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Searches one position.
+	 * @param line     The input line number.
+	 * @param position The input line.
+	 * @param level    How deep to search boards too big to solve, or 0 to choose by size.
+	 * @return What the search found.
+	 */
+	private static Result evaluate(long line, String position, int level) {
+		SearchStats.Counters stats = SearchStats.local();
+		long                 nodes = stats.nodes;
+		long                 start = System.nanoTime();
+		try {
+			String[]          f       = position.trim().split("\\s+");
+			int               columns = Integer.parseInt(f[0]);
+			int               rows    = Integer.parseInt(f[1]);
+			DomineeringBoard2 board   = DomineeringBoard2.replay(columns, rows, Arrays.asList(f).subList(2, f.length));
+			boolean           exact   = BlackBoxDomineering2.exact(columns, rows);
+			int               depth   = (exact ? -10 : level > 0 ? level : BlackBoxDomineering2.heuristicLevel(columns, rows));
+			GameTree2<DomineeringMove> tree = board.tree(depth, -1, 1, !exact);
+			Optional<Entry<DomineeringMove, GameTree2<DomineeringMove>>> best = tree.optimalEntry();
+			return new Result(line, String.valueOf(tree.optimalOutcome()),
+					best.map(e -> PackedMove.toString(PackedMove.of(e.getKey(), board.nextPlayer(), columns)))
+						.orElse(""),
+					stats.nodes - nodes, System.nanoTime() - start);
+		}
+		catch(RuntimeException e) { //a bad line, e.g. IllegalArgumentException, only loses its own result
+			String message = (e.getMessage() == null ? e.toString() : e.getMessage().split("\n")[0]); //not the whole board
+			System.err.println("Line " + line + ": " + message);
+			return new Result(line, "", "", 0, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Waits for a search, passing on anything it threw.
+	 * @param f The search.
+	 * @return Its result.
+	 */
+	private static Result await(Future<Result> f) throws InterruptedException {
+		try {
+			return f.get();
+		}
+		catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if(cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+}
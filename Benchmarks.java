@@ -0,0 +1,282 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * Micro-benchmarks for the hot paths of the engine: the board operations,
+ * the tables that hold game tree children, and whole solves.
+ * <p>
+ * Each benchmark is warmed up and then run for a number of timed iterations;
+ * the result is the mean number of operations per second with its standard
+ * deviation, and for solves the nodes searched per second. Results are
+ * printed as CSV:
+ * <pre>
+ *   benchmark,params,ops_per_sec,error,nodes_per_sec
+ * </pre>
+ * Given a CSV from an earlier run as a baseline, any benchmark that got
+ * slower by more than the tolerance is reported and the exit status is 1,
+ * so a build script can refuse to deploy a regression.
+ * <p>
+ * Usage: java Benchmarks [filter] [--baseline file] [--tolerance 0.10]
+ *        [--warmup n] [--iterations n] [--millis n]
+ */
+public class Benchmarks {
+
+	private static volatile int sink; //results go here so the JIT cannot drop the work
+
+	/**
+	 * One benchmark: an operation and how to describe it.
+	 */
+	private static class Benchmark {
+		private final String      name;
+		private final String      params;
+		private final IntSupplier op;
+
+		/**
+		 * @param name   What is measured.
+		 * @param params The setting it is measured in.
+		 * @param op     One operation, returning something that depends on its work.
+		 */
+		private Benchmark(String name, String params, IntSupplier op) {
+			this.name = name;
+			this.params = params;
+			this.op = op;
+		}
+
+		/**
+		 * @return The benchmark's key in a results file.
+		 */
+		private String key() {
+			return name + "," + params;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		String filter     = "";
+		String baseline   = null;
+		double tolerance  = 0.10;
+		int    warmup     = 3;
+		int    iterations = 5;
+		int    millis     = 500;
+		try {
+			for(int i = 0; i < args.length; i++) {
+				switch(args[i]) {
+					case "--baseline":   baseline = args[++i]; break;
+					case "--tolerance":  tolerance = Double.parseDouble(args[++i]); break;
+					case "--warmup":     warmup = Integer.parseInt(args[++i]); break;
+					case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+					case "--millis":     millis = Integer.parseInt(args[++i]); break;
+					default:             filter = args[i];
+				}
+			}
+		}
+		catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			System.err.println("Usage: java Benchmarks [filter] [--baseline file] [--tolerance 0.10]"
+					+ " [--warmup n] [--iterations n] [--millis n]");
+			System.exit(1);
+		}
+
+		Map<String, Double> before = (baseline == null ? new HashMap<String, Double>() : read(baseline));
+		boolean regressed = false;
+		System.out.println("benchmark,params,ops_per_sec,error,nodes_per_sec");
+		for(Benchmark b : benchmarks()) {
+			if(!b.key().contains(filter)) {
+				continue;
+			}
+			for(int i = 0; i < warmup; i++) {
+				iteration(b, millis);
+			}
+			double[] ops   = new double[iterations];
+			long     nodes = SearchStats.snapshot().nodes();
+			long     nanos = 0;
+			for(int i = 0; i < iterations; i++) {
+				long start = System.nanoTime();
+				ops[i] = iteration(b, millis);
+				nanos += System.nanoTime() - start;
+			}
+			nodes = SearchStats.snapshot().nodes() - nodes;
+
+			double mean  = mean(ops);
+			double error = stdev(ops, mean);
+			System.out.printf("%s,%.1f,%.1f,%.0f%n", b.key(), mean, error, nodes / (nanos / 1e9));
+			Double old = before.get(b.key());
+			if(old != null && mean < old * (1 - tolerance)) {
+				System.err.printf("REGRESSION %s: %.1f ops/s, was %.1f%n", b.key(), mean, old);
+				regressed = true;
+			}
+		}
+		System.exit(regressed ? 1 : 0);
+	}
+
+	/**
+	 * Every benchmark.
+	 * @return The benchmarks, in the order they are run.
+	 */
+	private static List<Benchmark> benchmarks() {
+		List<Benchmark> all = new ArrayList<Benchmark>();
+
+		for(int n : new int[] {4, 6, 8}) {
+			DomineeringBoard2 board = midgame(n, n);
+			DomineeringMove   move  = board.availableMoves().iterator().next();
+			String            size  = n + "x" + n;
+			all.add(new Benchmark("board.play", size, () -> board.play(move).hashCode()));
+			all.add(new Benchmark("board.playerAvailableMoves", size,
+					() -> board.playerAvailableMoves(DomineeringBoard2.H).size()));
+			all.add(new Benchmark("board.value", size, () -> board.value()));
+			all.add(new Benchmark("board.heuristicValue", size, () -> board.heuristicValue()));
+		}
+
+		for(int n : new int[] {8, 32, 128}) {
+			DomineeringMove[] keys = shuffledMoves(n);
+			String            size = "n=" + n;
+			Table<DomineeringMove, Integer> bst = fill(new BstTable<DomineeringMove, Integer>(), keys);
+			Table<DomineeringMove, Integer> ints = fill(new IntTable<Integer>(), keys);
+			all.add(new Benchmark("BstTable.put", size, () -> fill(new BstTable<DomineeringMove, Integer>(), keys).size()));
+			all.add(new Benchmark("BstTable.get", size, () -> getAll(bst, keys)));
+			all.add(new Benchmark("BstTable.keys", size, () -> bst.keys().size()));
+			all.add(new Benchmark("BstTable.values", size, () -> bst.values().size()));
+			all.add(new Benchmark("IntTable.put", size, () -> fill(new IntTable<Integer>(), keys).size()));
+			all.add(new Benchmark("IntTable.get", size, () -> getAll(ints, keys)));
+			all.add(new Benchmark("IntTable.keys", size, () -> ints.keys().size()));
+			all.add(new Benchmark("IntTable.values", size, () -> ints.values().size()));
+		}
+
+		for(int[] size : new int[][] {{4, 4}, {5, 4}}) {
+			all.add(new Benchmark("tree.solve", size[0] + "x" + size[1],
+					() -> new DomineeringBoard2(size[0], size[1]).tree(-10, -1, 1, false).optimalOutcome()));
+		}
+		return all;
+	}
+
+	/**
+	 * Runs a benchmark for about the given time.
+	 * @param b      The benchmark.
+	 * @param millis How long to run it for.
+	 * @return Operations per second.
+	 */
+	private static double iteration(Benchmark b, int millis) {
+		long deadline = System.nanoTime() + millis * 1_000_000L;
+		long start    = System.nanoTime();
+		long ops      = 0;
+		int  acc      = 0;
+		do {
+			acc += b.op.getAsInt();
+			ops++;
+		} while(System.nanoTime() < deadline);
+		sink = acc;
+		return ops / ((System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * A position a quarter of the way through a game, the same on every run.
+	 * @param columns Number of columns.
+	 * @param rows    Number of rows.
+	 * @return The board.
+	 */
+	private static DomineeringBoard2 midgame(int columns, int rows) {
+		Board2<DomineeringMove> board  = new DomineeringBoard2(columns, rows);
+		Random                  random = new Random(columns * 31 + rows);
+		for(int i = 0; i < columns * rows / 8; i++) { //each move covers two of the positions
+			List<DomineeringMove> moves = new ArrayList<DomineeringMove>(board.availableMoves());
+			if(moves.isEmpty()) {
+				break;
+			}
+			board = board.play(moves.get(random.nextInt(moves.size())));
+		}
+		return (DomineeringBoard2) board;
+	}
+
+	/**
+	 * @param n How many moves.
+	 * @return Moves 1 to n in a fixed random order.
+	 */
+	private static DomineeringMove[] shuffledMoves(int n) {
+		DomineeringMove[] moves  = new DomineeringMove[n];
+		Random            random = new Random(n);
+		for(int i = 0; i < n; i++) {
+			moves[i] = DomineeringMove.of(i + 1);
+		}
+		for(int i = n - 1; i > 0; i--) {
+			int             j = random.nextInt(i + 1);
+			DomineeringMove t = moves[i];
+			moves[i] = moves[j];
+			moves[j] = t;
+		}
+		return moves;
+	}
+
+	/**
+	 * @param table An empty table.
+	 * @param keys  The keys to put in it.
+	 * @return The table with every key put in it.
+	 */
+	private static Table<DomineeringMove, Integer> fill(Table<DomineeringMove, Integer> table, DomineeringMove[] keys) {
+		for(DomineeringMove k : keys) {
+			table = table.put(k, k.getMove());
+		}
+		return table;
+	}
+
+	/**
+	 * @param table A table.
+	 * @param keys  The keys to look up.
+	 * @return The sum of the values found.
+	 */
+	private static int getAll(Table<DomineeringMove, Integer> table, DomineeringMove[] keys) {
+		int sum = 0;
+		for(DomineeringMove k : keys) {
+			sum += table.get(k).get();
+		}
+		return sum;
+	}
+
+	/**
+	 * Reads the results of an earlier run.
+	 * @param file A CSV written by this class.
+	 * @return Operations per second by benchmark key.
+	 */
+	private static Map<String, Double> read(String file) throws IOException {
+		Map<String, Double> results = new HashMap<String, Double>();
+		for(String line : Files.readAllLines(Paths.get(file))) {
+			String[] fields = line.split(",");
+			if(fields.length >= 3 && !fields[0].equals("benchmark")) {
+				results.put(fields[0] + "," + fields[1], Double.parseDouble(fields[2]));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * @param xs Some numbers.
+	 * @return Their mean.
+	 */
+	private static double mean(double[] xs) {
+		double sum = 0;
+		for(double x : xs) {
+			sum += x;
+		}
+		return sum / xs.length;
+	}
+
+	/**
+	 * @param xs   Some numbers.
+	 * @param mean Their mean.
+	 * @return Their sample standard deviation.
+	 */
+	private static double stdev(double[] xs, double mean) {
+		if(xs.length < 2) {
+			return 0;
+		}
+		double sum = 0;
+		for(double x : xs) {
+			sum += (x - mean) * (x - mean);
+		}
+		return Math.sqrt(sum / (xs.length - 1));
+	}
+}
@@ -1,27 +1,39 @@
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Scanner;
 
 /**
  * A black box player for the game Domineering that can play optimally up to
- * 5x4/4x5 boards and heuristically for dimensions above that.
+ * 5x4/4x5 boards (and any board solved by RetrogradeSolver) and heuristically
+ * for dimensions above that.
  *
  * @author James Birch
  */
 public class BlackBoxDomineering2 {
 
-    private static int    rows; //number of rows on board
-    private static int    columns; //number of columns on board
-    private static int    size; //number of positions on board
-    private static String cpuTurn; //whether the cpu goes first or second
-    private static String myTurn; //whether the player is horizontal or vertical
-    private static ArrayList<Integer> played        = new ArrayList<Integer>(); //tiles already taken
-    private static ArrayList<Integer> illegalMovesH = new ArrayList<Integer>(); //forbidden moves for horizontal
-    private static ArrayList<Integer> illegalMovesV = new ArrayList<Integer>(); //forbidden moves for vertical
-
     private static class BBD implements MoveChannel<DomineeringMove> {
 
         private static Scanner scanner = new Scanner(System.in);
 
+        private final int     rows; //number of rows on board
+        private final int     columns; //number of columns on board
+        private final boolean vertical; //whether the player is vertical (and so the cpu horizontal)
+        private final BitSet  played; //positions already covered, indexed from 1
+
+        /**
+         * @param columns  Number of columns on the board.
+         * @param rows     Number of rows on the board.
+         * @param vertical Whether the player is vertical.
+         */
+        private BBD(int columns, int rows, boolean vertical) {
+            this.columns = columns;
+            this.rows = rows;
+            this.vertical = vertical;
+            this.played = new BitSet(rows * columns + 1);
+        }
+
         @Override
         /**
          * Gets the move from the player.
@@ -64,41 +76,33 @@ public class BlackBoxDomineering2 {
                 System.exit(1);
             }
 
-            //convert that move to the corresponding board position
-            int position = x + (columns * y) + 1;
-
             //early exit conditions
-            if(played.contains(position) || position > size || position < 1) {
-                System.exit(1);  //exit if any of these conditions are violated
+            if(x < 0 || y < 0 || x >= columns || y >= rows) {
+                System.exit(1);  //exit if the move is off the board
             }
 
-            if(myTurn.equals("H") && illegalMovesH.contains(position)) {
-                System.exit(1); //if player who is horizontal plays a illegal horizontal move - exit
+            if(!vertical && x == columns - 1) {
+                System.exit(1); //if player who is horizontal plays in the last column - exit
             }
-            else if(myTurn.equals("V") && illegalMovesV.contains(position)) {
-                System.exit(1); //if player who is vertical plays a illegal vertical move - exit
+            else if(vertical && y == rows - 1) {
+                System.exit(1); //if player who is vertical plays in the last row - exit
             }
 
-            if(myTurn.equals("H") && played.contains(position + 1)) {
-                System.exit(1); //covers scenario where player who is horizontal plays a free tile
-                //but the adjacent tile is not free
-            }
-            else if(myTurn.equals("V") && played.contains(position + columns)) {
-                System.exit(1); //covers scenario where player who is vertical plays a free tile
-                //but the tile below is not free
+            //convert that move to the corresponding board position
+            int packed   = PackedMove.fromXY(x, y, vertical, columns);
+            int position = PackedMove.anchor(packed);
+            int second   = PackedMove.second(packed); //square to the right (H) or below (V)
+
+            if(played.get(position) || played.get(second)) {
+                System.exit(1); //covers scenario where either tile is not free
             }
 
             //now add the corresponding positions to played moves
-            played.add(position); //add to list of played moves
-            if(myTurn.equals("H")) {
-                played.add(position + 1); //if player is horizontal - cover square to the right
-            }
-            else {
-                played.add(position + columns); //if player is vertical - cover square below
-            }
+            played.set(position);
+            played.set(second);
             //System.out.println("Player: " + position);
             System.out.println("Player: " + x + "," + y);
-            return new DomineeringMove(position);
+            return DomineeringMove.of(position);
         }
 
         @Override
@@ -107,31 +111,13 @@ public class BlackBoxDomineering2 {
          * @param move The move made.
          */
         public void giveMove(DomineeringMove move) {
+            //if the player is horizontal the cpu is vertical and vice versa
+            int packed = PackedMove.pack(move.getMove(), !vertical, columns);
+            played.set(PackedMove.anchor(packed));
+            played.set(PackedMove.second(packed)); //cover tile below (V) or to the right (H)
+
             //convert a move so that it prints as x,y
-            played.add(move.getMove());
-            if(myTurn.equals("H")) { //cpu is vertical
-                played.add(move.getMove() + columns); //needs to cover tile below
-            }
-            else {
-                played.add(move.getMove() + 1); //needs to cover tile to the right
-            }
-            int x       = 0;
-            int y       = 0;
-            int counter = 1;
-            for(int i = 1; i <= size; i++) {
-                if(counter == move.getMove()) {
-                    break;
-                }
-                else if(i % columns != 0) {
-                    x++;
-                }
-                else {
-                    x = 0;
-                    y++;
-                }
-                counter++;
-            }
-            System.out.println("Computer: " + x + "," + y);
+            System.out.println("Computer: " + PackedMove.toString(packed));
             //System.err.println("Computer: " + (x + columns * y + 1));
         }
 
@@ -142,6 +128,9 @@ public class BlackBoxDomineering2 {
          */
         public void end(int Value) {
             //System.err.println("Game over. The result is " + Value);
+            if(Boolean.getBoolean("domineering.stats")) {
+                System.err.println(SearchStats.snapshot()); //how hard the engine worked this game
+            }
             scanner.close();
             System.exit(0);
         }
@@ -156,12 +145,87 @@ public class BlackBoxDomineering2 {
         }
     }
 
+    /**
+     * Plays one game as the computer over a move channel. Boards up to 5x4/4x5 are
+     * played optimally and anything bigger heuristically - with graded outcomes
+     * if the engine uses aspiration windows.
+     *
+     * @param c        The channel to the opponent.
+     * @param columns  Number of columns on the board.
+     * @param rows     Number of rows on the board.
+     * @param cpuFirst Whether the computer goes first (and so plays horizontal).
+     * @param engine   Where to do the searching.
+     */
+    static void play(MoveChannel<DomineeringMove> c, int columns, int rows, boolean cpuFirst, Engine engine) {
+        DomineeringBoard2 board = new DomineeringBoard2(columns, rows, engine.aspires());
+        if(Boolean.getBoolean("domineering.quiescence")) { //search swing moves past the horizon
+            board = board.quiescent();
+        }
+        if(Boolean.getBoolean("domineering.reductions")) { //search late moves less deeply
+            board = board.lateMoveReductions();
+        }
+        if(Boolean.getBoolean("domineering.futility")) { //skip moves which cannot matter at the frontier
+            board = board.futilityPruning();
+        }
+
+        if(exact(columns, rows)) { //if true -> take optimal approach
+            if(cpuFirst) {
+                engine.tree(board, -10, -1, 1, false).firstPlayer(c, -10, -1, 1, false, engine); //computer first (plays as H)
+                //use a bogus value for the level - just so that it can use the tree method.
+            }
+            else {
+                engine.tree(board, -10, -1, 1, false).secondPlayer(c, -10, -1, 1, false, engine); //computer second (plays as V)
+                //use a bogus value for the level - just so that it can use the tree method.
+            }
+        }
+        else { //otherwise take heuristic approach
+            int level = heuristicLevel(columns, rows);
+            int win   = board.maxOutcome(); //1 unless graded
+            if(cpuFirst) {
+                engine.tree(board, level, -win, win, true).firstPlayer(c, level, -win, win, true, engine); //computer first (plays as H)
+            }
+            else {
+                engine.tree(board, level, -win, win, true).secondPlayer(c, level, -win, win, true, engine); //computer second (plays as V)
+            }
+        }
+    }
+
+    /**
+     * Whether boards of a size are small enough to solve exactly.
+     *
+     * @param columns Number of columns on the board.
+     * @param rows    Number of rows on the board.
+     * @return True up to 5x4/4x5 or if the size has been solved in advance (see
+     *         RetrogradeSolver), false for anything bigger.
+     */
+    static boolean exact(int columns, int rows) {
+        return ((columns <= 5 && rows <= 5) && !(columns == 5 && rows == 5))
+               || RetrogradeSolver.installed(columns, rows) != null;
+    }
+
+    /**
+     * How deep to search boards too big to solve. A search visits about as
+     * many nodes as there are moves to the power of half its depth, so big
+     * boards are searched less deeply to keep each move to around a second.
+     *
+     * @param columns Number of columns on the board.
+     * @param rows    Number of rows on the board.
+     * @return The level to search to.
+     */
+    static int heuristicLevel(int columns, int rows) {
+        return (columns * rows <= 100 ? 5 : columns * rows <= 1024 ? 4 : 3); //up to 10x10, up to 32x32, bigger
+    }
+
     /**
      * Creates a new instance of the game with either the human going first or the computer.
      */
     public static void main(String[] args) {
         assert (args.length == 4);
 
+        String cpuTurn = null; //whether the cpu goes first or second
+        int    columns = 0; //number of columns on board
+        int    rows    = 0; //number of rows on board
+
         try {
             cpuTurn = args[0]; //first or second
             columns = Integer.parseInt(args[2]); //width
@@ -176,6 +240,10 @@ public class BlackBoxDomineering2 {
             System.err.println("Usage: java BlackBoxDomineering2 <first/second> <horizontal/vertical> <x> <y>");
             System.exit(1); //exit if columns or rows is not given as an int
         }
+        if(columns < 0 || rows < 0 || (long) columns * rows > PackedMove.MAX_POSITION) {
+            System.err.println("Boards can have at most " + PackedMove.MAX_POSITION + " positions");
+            System.exit(1);
+        }
 	
 	if((columns == 0 || rows == 0) && cpuTurn.equals("second")) {
 		System.exit(0); //horizontal always goes first so will always lose in this situation		
@@ -184,44 +252,62 @@ public class BlackBoxDomineering2 {
         assert (args[0].equals("first") || args[0].equals("second"));
         assert (args[1].equals("horizontal") || args[1].equals("vertical"));
 
-        size = rows * columns;
-
-        if(cpuTurn.equals("first")) {
-            myTurn = "V"; //if cpu is first - they are horizontal so we must be vertical
+        Engine engine = Engine.INLINE;
+        if(Boolean.getBoolean("domineering.ponder")) { //think on the human's time as well
+            engine = engine.pondering(Engine.daemons("ponder", Runtime.getRuntime().availableProcessors()));
         }
-        else {
-            myTurn = "H"; //if cpu is second - they are vertical so we must be horizontal
+        String aspiration = System.getProperty("domineering.aspiration");
+        if(aspiration != null) { //e.g. 1,4,16 - search narrow windows around the last outcome
+            try {
+                engine = engine.aspiration(Arrays.stream(aspiration.split(",")).mapToInt(Integer::parseInt).toArray());
+            }
+            catch(IllegalArgumentException e) { //includes NumberFormatException
+                System.err.println("Bad domineering.aspiration: " + e.getMessage());
+                System.exit(1);
+            }
         }
-
-        //assign each player's illegal moves (e.g. last row or column respectively)
-        for(int i = 1; i <= size; i++) {
-            if(i % columns == 0) {
-                illegalMovesH.add(i);
+        //if cpu is first - they are horizontal so we must be vertical, and vice versa
+        MoveChannel<DomineeringMove> c = new BBD(columns, rows, cpuTurn.equals("first"));
+        String solved = System.getProperty("domineering.solved");
+        if(solved != null) { //every position already solved by RetrogradeSolver - play perfectly without searching
+            try {
+                RetrogradeSolver.readFrom(Paths.get(solved)).install();
             }
-            else if(i > (size - columns)) {
-                illegalMovesV.add(i);
+            catch(IOException e) {
+                System.err.println("Could not read " + solved + ": " + e.getMessage());
+                System.exit(1);
             }
         }
-
-        DomineeringBoard2 board = new DomineeringBoard2(columns, rows);
-        
-        if((columns <= 5 && rows <= 5) && !(columns == 5 && rows == 5)) { //if true -> take optimal approach
-            if(cpuTurn.equals("first")) {
-                board.tree(-10, -1, 1, false).firstPlayer(new BBD(), -10, -1, 1, false); //computer first (plays as H)
-                //use a bogus value for the level - just so that it can use the tree method.
+        try { //e.g. -Ddomineering.tt=1024 - keep the positions exact searches solve off the heap
+            TranspositionTable table = TranspositionTable.configured();
+            if(table != null) {
+                table.install();
             }
-            else {
-                board.tree(-10, -1, 1, false).secondPlayer(new BBD(), -10, -1, 1, false); //computer second (plays as V)
-                //use a bogus value for the level - just so that it can use the tree method.
+        }
+        catch(IOException | NumberFormatException e) {
+            System.err.println("Could not make the transposition table: " + e.getMessage());
+            System.exit(1);
+        }
+        try { //e.g. -Ddomineering.cache=solved.cache - share solved positions with other processes
+            SolvedCache cache = SolvedCache.configured();
+            if(cache != null) {
+                cache.install();
             }
         }
-        else { //otherwise take heuristic approach
-            if(cpuTurn.equals("first")) {
-                board.tree(5, -1, 1, true).firstPlayer(new BBD(), 5, -1, 1, true); //computer first (plays as H)
+        catch(IOException | NumberFormatException e) {
+            System.err.println("Could not open the cache of solved positions: " + e.getMessage());
+            System.exit(1);
+        }
+        String record = System.getProperty("domineering.record");
+        if(record != null) { //append the game to a file of game records
+            try {
+                c = new RecordingMoveChannel(c, columns, rows, new GameRecord.Writer(Paths.get(record)));
             }
-            else {
-                board.tree(5, -1, 1, true).secondPlayer(new BBD(), 5, -1, 1, true); //computer second (plays as V)
+            catch(IOException e) {
+                System.err.println("Could not open " + record + ": " + e.getMessage());
+                System.exit(1);
             }
         }
+        play(c, columns, rows, cpuTurn.equals("first"), engine);
     }
 }
@@ -1,4 +1,5 @@
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 /**
  * An abstract two-player game with outcomes in the integers.
@@ -15,6 +16,8 @@ import java.util.Set;
  */
 public abstract class Board2<Move extends Comparable<Move>> {
 
+	private static final int LATE_MOVES = 3; //moves searched to full depth before reductions start
+
 	/**
 	 * The next player to play.
 	 *
@@ -52,6 +55,113 @@ public abstract class Board2<Move extends Comparable<Move>> {
 	 */
 	abstract int heuristicValue();
 
+	/**
+	 * The value of a position where a heuristic search reaches its depth.
+	 * Boards which can tell when that is in the middle of an exchange can
+	 * look further; the rest return heuristicValue().
+	 *
+	 * @param alpha The lower bound.
+	 * @param beta  The upper bound.
+	 * @return An estimate for the outcome of the game.
+	 */
+	int horizonValue(int alpha, int beta) {
+		return heuristicValue();
+	}
+
+	/**
+	 * The available moves in the order a search should try them. Boards
+	 * which can guess which moves are best put them first, which makes
+	 * cutoffs come sooner and lets reducesLateMoves() reduce the rest.
+	 *
+	 * @return The available moves, best first.
+	 */
+	Iterable<Move> searchOrder() {
+		return availableMoves();
+	}
+
+	/**
+	 * Whether a heuristic search reduces late moves: the moves after the
+	 * first LATE_MOVES in searchOrder() are searched a level less deep, with
+	 * a null window which only asks whether they beat the best move so far,
+	 * and searched again in full only if they do.
+	 *
+	 * @return True to reduce late moves.
+	 */
+	boolean reducesLateMoves() {
+		return false;
+	}
+
+	/**
+	 * For futility pruning: the most one move can change heuristicValue(),
+	 * or 0 if that cannot be bounded. A heuristic search one level above its
+	 * depth stops trying moves once the heuristic value plus (for the
+	 * maximiser, or minus for the minimiser) this margin cannot beat the best
+	 * move so far.
+	 *
+	 * @return The margin, or 0 not to prune.
+	 */
+	int futilityMargin() {
+		return 0;
+	}
+
+	/**
+	 * The value of a finished game in a heuristic search, on the same scale as
+	 * heuristicValue(). Boards whose heuristic values go beyond 1 and -1 scale
+	 * wins and losses past every heuristic value.
+	 *
+	 * @return The value of the finished game.
+	 */
+	int terminalValue() {
+		return value();
+	}
+
+	/**
+	 * The largest outcome a heuristic search can return, so a search of the
+	 * whole range uses the window [-maxOutcome(), maxOutcome()].
+	 *
+	 * @return The largest outcome.
+	 */
+	int maxOutcome() {
+		return 1;
+	}
+
+	/**
+	 * An empty table for the children of a node in the game tree. Boards
+	 * whose moves have a cheaper table representation can override this.
+	 *
+	 * @return An empty table of subtrees.
+	 */
+	Table<Move, GameTree2<Move>> emptyTable() {
+		return new BstTable<Move, GameTree2<Move>>();
+	}
+
+	/**
+	 * How many plies of an exact tree() are built as GameTree2 nodes. Below
+	 * that only the outcome is needed until the game gets there, so it comes
+	 * from outcome() and the node is a leaf which is searched again if it is
+	 * reached. Boards with no cheaper way to compute outcomes build the whole
+	 * tree.
+	 *
+	 * @return The number of plies of nodes to build.
+	 */
+	int treePlies() {
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * The optimal outcome of an exact search from this board, counted in
+	 * SearchStats as tree() would count it. Boards that override treePlies()
+	 * override this with a search that does not build a tree.
+	 *
+	 * @param level The current depth.
+	 * @param alpha The lower bound.
+	 * @param beta  The upper bound.
+	 * @return The optimal outcome.
+	 */
+	int outcome(int level, int alpha, int beta) {
+		return tree(level, alpha, beta, false, Integer.MAX_VALUE).optimalOutcome();
+	}
+
 	/**
 	 * A tree of the game.
 	 * 
@@ -62,12 +172,37 @@ public abstract class Board2<Move extends Comparable<Move>> {
 	 * @return A game tree of the game.
 	 */
 	public GameTree2<Move> tree(int level, int alpha, int beta, boolean heuristic) {
-		if(availableMoves().isEmpty()) {
-			return new GameTree2<Move>(this, new BstTable<Move, GameTree2<Move>>(), value());
+		return tree(level, alpha, beta, heuristic, heuristic ? Integer.MAX_VALUE : treePlies());
+	}
+
+	/**
+	 * A tree of the game with nodes built to a given number of plies.
+	 *
+	 * @param level     The current depth.
+	 * @param alpha     The lower bound.
+	 * @param beta      The upper bound.
+	 * @param heuristic Whether the game played is heuristic.
+	 * @param plies     How many more plies of nodes to build.
+	 * @return A game tree of the game.
+	 */
+	GameTree2<Move> tree(int level, int alpha, int beta, boolean heuristic, int plies) {
+		if(plies == 0) {
+			return new GameTree2<Move>(this, emptyTable(), outcome(level, alpha, beta));
 		}
-		else {
-			return (nextPlayer() == Player.MAXIMIZER ? maxTree(level - 1, alpha, beta, heuristic)
-					: minTree(level - 1, alpha, beta, heuristic));
+		SearchStats.Counters stats = SearchStats.local();
+		stats.enter();
+		try {
+			if(availableMoves().isEmpty()) {
+				stats.leaves++;
+				return new GameTree2<Move>(this, emptyTable(), heuristic ? terminalValue() : value());
+			}
+			else {
+				return (nextPlayer() == Player.MAXIMIZER ? maxTree(level - 1, alpha, beta, heuristic, plies)
+						: minTree(level - 1, alpha, beta, heuristic, plies));
+			}
+		}
+		finally {
+			stats.leave();
 		}
 	}
 
@@ -96,6 +231,20 @@ public abstract class Board2<Move extends Comparable<Move>> {
 	 * @return The game tree for the maximiser.
 	 */
 	public GameTree2<Move> maxTree(int level, int alpha, int beta, boolean heuristic) {
+		return maxTree(level, alpha, beta, heuristic, heuristic ? Integer.MAX_VALUE : treePlies());
+	}
+
+	/**
+	 * Produces the tree for the maximiser with nodes built to a given number of plies.
+	 * 
+	 * @param level     The current depth.
+	 * @param alpha     The lower bound.
+	 * @param beta      The upper bound.
+	 * @param heuristic Whether the game played is heuristic.
+	 * @param plies     How many more plies of nodes to build.
+	 * @return The game tree for the maximiser.
+	 */
+	GameTree2<Move> maxTree(int level, int alpha, int beta, boolean heuristic, int plies) {
 		try {
 			assert (!availableMoves().isEmpty());
 		}
@@ -105,20 +254,44 @@ public abstract class Board2<Move extends Comparable<Move>> {
 		}
 
 		int optimalOutcome = Integer.MIN_VALUE;
-		Table<Move, GameTree2<Move>> children
-		= new BstTable<Move, GameTree2<Move>>();
+		Table<Move, GameTree2<Move>> children = emptyTable();
 
 		if(level <= 0 && heuristic) {
-			optimalOutcome = heuristicValue();
+			SearchStats.local().leaves++;
+			optimalOutcome = horizonValue(alpha, beta);
 		}
 		else {
-			for(Move m : availableMoves()) {
-				GameTree2<Move> subtree = play(m).tree(level, alpha, beta, heuristic);
-				children = children.put(m, subtree);
+			int margin = (heuristic && level == 1 ? futilityMargin() : 0);
+			int futile = (margin > 0 ? heuristicValue() + margin : 0); //the most any move can reach
+			int tried  = 0; //moves tried so far
+			for(Move m : searchOrder()) {
+				if(Thread.currentThread().isInterrupted()) {
+					throw new CancellationException("Search cancelled"); //e.g. pondering on the wrong reply
+				}
+				int bound = Math.max(alpha, optimalOutcome); //the moves tried so far narrow the window
+				if(margin > 0 && futile <= bound) {
+					optimalOutcome = Math.max(optimalOutcome, futile); //no move left can beat the bound
+					break;
+				}
+				Board2<Move> next = play(m);
+				if(heuristic && tried >= LATE_MOVES && level >= 2 && reducesLateMoves()) {
+					GameTree2<Move> reduced = next.tree(level - 1, bound, bound + 1, heuristic, plies - 1);
+					if(reduced.optimalOutcome() <= bound) {
+						optimalOutcome = Math.max(optimalOutcome, reduced.optimalOutcome());
+						tried++;
+						continue; //no better than the moves before it - not played, and rebuilt if reached
+					}
+				}
+				GameTree2<Move> subtree = next.tree(level, bound, beta, heuristic, plies - 1);
+				if(bound == alpha || subtree.optimalOutcome() > bound) {
+					children = children.put(m, subtree); //otherwise only a bound - not played, and rebuilt if reached
+				}
 				optimalOutcome = Math.max(optimalOutcome, subtree.optimalOutcome());
-				if(optimalOutcome == beta) {
+				if(optimalOutcome >= beta) {
+					SearchStats.local().cutoff(tried);
 					break;
 				}
+				tried++;
 			}
 		}
 
@@ -135,6 +308,20 @@ public abstract class Board2<Move extends Comparable<Move>> {
 	 * @return The game tree for the minimiser.
 	 */
 	public GameTree2<Move> minTree(int level, int alpha, int beta, boolean heuristic) {
+		return minTree(level, alpha, beta, heuristic, heuristic ? Integer.MAX_VALUE : treePlies());
+	}
+
+	/**
+	 * Produces the tree for the minimiser with nodes built to a given number of plies.
+	 * 
+	 * @param level     The current depth.
+	 * @param alpha     The lower bound.
+	 * @param beta      The upper bound.
+	 * @param heuristic Whether the game played is heuristic.
+	 * @param plies     How many more plies of nodes to build.
+	 * @return The game tree for the minimiser.
+	 */
+	GameTree2<Move> minTree(int level, int alpha, int beta, boolean heuristic, int plies) {
 		try {
 			assert (!availableMoves().isEmpty());
 		}
@@ -144,19 +331,44 @@ public abstract class Board2<Move extends Comparable<Move>> {
 		}
 
 		int optimalOutcome = Integer.MAX_VALUE;
-		Table<Move, GameTree2<Move>> children = new BstTable<Move, GameTree2<Move>>();
+		Table<Move, GameTree2<Move>> children = emptyTable();
 
 		if(level <= 0 && heuristic) {
-			optimalOutcome = heuristicValue();
+			SearchStats.local().leaves++;
+			optimalOutcome = horizonValue(alpha, beta);
 		}
 		else {
-			for(Move m : availableMoves()) {
-				GameTree2<Move> subtree = play(m).tree(level, alpha, beta, heuristic);
-				children = children.put(m, subtree);
+			int margin = (heuristic && level == 1 ? futilityMargin() : 0);
+			int futile = (margin > 0 ? heuristicValue() - margin : 0); //the least any move can reach
+			int tried  = 0; //moves tried so far
+			for(Move m : searchOrder()) {
+				if(Thread.currentThread().isInterrupted()) {
+					throw new CancellationException("Search cancelled"); //e.g. pondering on the wrong reply
+				}
+				int bound = Math.min(beta, optimalOutcome); //the moves tried so far narrow the window
+				if(margin > 0 && futile >= bound) {
+					optimalOutcome = Math.min(optimalOutcome, futile); //no move left can beat the bound
+					break;
+				}
+				Board2<Move> next = play(m);
+				if(heuristic && tried >= LATE_MOVES && level >= 2 && reducesLateMoves()) {
+					GameTree2<Move> reduced = next.tree(level - 1, bound - 1, bound, heuristic, plies - 1);
+					if(reduced.optimalOutcome() >= bound) {
+						optimalOutcome = Math.min(optimalOutcome, reduced.optimalOutcome());
+						tried++;
+						continue; //no better than the moves before it - not played, and rebuilt if reached
+					}
+				}
+				GameTree2<Move> subtree = next.tree(level, alpha, bound, heuristic, plies - 1);
+				if(bound == beta || subtree.optimalOutcome() < bound) {
+					children = children.put(m, subtree); //otherwise only a bound - not played, and rebuilt if reached
+				}
 				optimalOutcome = Math.min(optimalOutcome, subtree.optimalOutcome());
-				if(optimalOutcome == alpha) {
+				if(optimalOutcome <= alpha) {
+					SearchStats.local().cutoff(tried);
 					break;
 				}
+				tried++;
 			}
 		}
 
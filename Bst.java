@@ -23,6 +23,7 @@ public interface Bst<Key extends Comparable<Key>,Value> {
     public void                       saveInOrder(Entry<Key,Value> a[]); 
     public int                        saveInOrder(Entry<Key,Value> a[], int i); 
     public Bst<Key,Value>             balanced(); 
+    public boolean                    verify();
     public Optional<Key> getKey();
     public Optional<Value> getValue();
     public Optional<Bst<Key,Value>> getLeft();
@@ -37,6 +38,10 @@ public interface Bst<Key extends Comparable<Key>,Value> {
 // * The constructors of the classes Empty and Fork should *not* allow
 //   building trees which do not have the binary search property. This
 //   should be checked with assert (Cf. lecture code Bst.zip).
+//
+// * The constructor of Fork only compares k with the roots of its
+//   subtrees, which keeps put at O(log n) even with -ea. The full
+//   property is checked by verify(), which callers run on demand.
 
 /*
    -------------------------------------------------------------------
@@ -140,4 +145,11 @@ public interface Bst<Key extends Comparable<Key>,Value> {
       ambiguously, a tree with same key-value pairs but with minimal
       height).
 
+   -------------------------------------------------------------------
+   boolean verify();
+
+      Does this whole tree have the binary search property? This walks
+      every node, so it is meant to be run once (e.g. in a test or with
+      assertions on), not on every construction.
+
  */
@@ -109,6 +109,15 @@ public class BstTable<Key extends Comparable<Key>,Value> implements Table<Key, V
 		return keys;
 	}
 	
+	/**
+	 * Checks that the underlying tree has the binary search property. This is
+	 * O(n), so it is for tests and debugging rather than every put.
+	 * @return A boolean for whether the table's tree is a valid binary search tree.
+	 */
+	public boolean verify() {
+		return bst.verify();
+	}
+	
 	/**
 	 * Creates an array from the binary search tree held in the table.
 	 * @param bst A binary search tree.
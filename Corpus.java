@@ -0,0 +1,309 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * A corpus of Domineering positions with their exact values, and a runner
+ * that checks every way the engine can search against it. Optimisations
+ * must not change results: a variant that gets a value wrong fails at
+ * once, and one that searches far more nodes than the corpus recorded is
+ * flagged.
+ * <p>
+ * The corpus file has one position per line:
+ * <pre>
+ *   columns rows value nodes move move ...
+ * </pre>
+ * where the moves are "x,y" played from the empty board, H first, and nodes
+ * is what Board2.tree searched to solve the position when the corpus was
+ * generated. Lines starting with "#" are ignored.
+ * <p>
+ * Usage: java Corpus generate [file]
+ * <br>
+ *        java Corpus [file] [variant ...]
+ * <p>
+ * The runner prints one CSV row per variant and position:
+ * <pre>
+ *   variant,position,value,nodes,baseline_nodes,ms
+ * </pre>
+ * It exits with 1 if a value is wrong and 2 if node counts exploded.
+ */
+public class Corpus {
+
+	public static final String DEFAULT_FILE = "corpus.txt";
+
+	private static final double EXPLOSION   = 1.5;       //flag a search that needs this many times the recorded nodes
+	private static final int    SLACK       = 100;       //...plus this many, so tiny searches are not flagged
+	private static final int    SAMPLES     = 6;         //positions tried per board size and number of moves played
+	private static final long   TABLE_BYTES = 16L << 20; //the "tt" variant's transposition table
+	private static final long   CACHE_BYTES = 1L << 20;  //the "cache" variants' file
+
+	private static final int[][] SIZES = {{2, 2}, {3, 2}, {2, 3}, {3, 3}, {4, 3}, {3, 4}, {4, 4}, {5, 4}, {4, 5}};
+
+	private final int          columns;
+	private final int          rows;
+	private final int          value;
+	private final long         nodes;
+	private final List<String> moves;
+
+	/**
+	 * @param columns Number of columns.
+	 * @param rows    Number of rows.
+	 * @param value   The exact value of the position.
+	 * @param nodes   The nodes Board2.tree searched to solve it.
+	 * @param moves   The moves that reach it, as "x,y".
+	 */
+	private Corpus(int columns, int rows, int value, long nodes, List<String> moves) {
+		this.columns = columns;
+		this.rows = rows;
+		this.value = value;
+		this.nodes = nodes;
+		this.moves = moves;
+	}
+
+	/**
+	 * The ways of solving a position to check. Each one returns the exact
+	 * value of the board it is given.
+	 * @return The variants by name.
+	 * @throws IOException If the file for the "cache" variants cannot be made.
+	 */
+	private static Map<String, ToIntFunction<DomineeringBoard2>> variants() throws IOException {
+		Map<String, ToIntFunction<DomineeringBoard2>> variants
+			= new LinkedHashMap<String, ToIntFunction<DomineeringBoard2>>();
+		Engine pool = Engine.bounded(2);
+		variants.put("tree", b -> b.tree(-10, -1, 1, false).optimalOutcome());
+		variants.put("bst", b -> new BstBoard(b).tree(-10, -1, 1, false).optimalOutcome());
+		variants.put("engine", b -> pool.tree(b, -10, -1, 1, false).optimalOutcome());
+		Map<Long, RetrogradeSolver> solved = new ConcurrentHashMap<Long, RetrogradeSolver>();
+		variants.put("retrograde", b -> solved.computeIfAbsent(((long) b.getColumns() << 32) | b.getRows(),
+				size -> RetrogradeSolver.solve(b.getColumns(), b.getRows())).value(b));
+		TranspositionTable table = new TranspositionTable(TABLE_BYTES); //shared, so later positions find earlier ones
+		variants.put("tt", b -> {
+			table.install();
+			try {
+				return b.tree(-10, -1, 1, false).optimalOutcome();
+			}
+			finally {
+				TranspositionTable.uninstall();
+			}
+		});
+		Path file = Files.createTempFile("corpus", ".cache"); //"cache" fills it, "cache-reread" maps it again
+		file.toFile().deleteOnExit();
+		variants.put("cache", b -> cached(file, b));
+		variants.put("cache-reread", b -> cached(file, b));
+		return variants;
+	}
+
+	/**
+	 * Solves a position with a SolvedCache installed, as a new process would:
+	 * the file is mapped afresh for every position.
+	 * @param file  The cache.
+	 * @param board The position.
+	 * @return Its value.
+	 */
+	private static int cached(Path file, DomineeringBoard2 board) {
+		try {
+			SolvedCache.open(file, CACHE_BYTES).install();
+			return board.tree(-10, -1, 1, false).optimalOutcome();
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		finally {
+			SolvedCache.uninstall();
+		}
+	}
+
+	/**
+	 * A board that keeps its children in a BstTable, as every board did
+	 * before IntTable.
+	 */
+	private static class BstBoard extends Board2<DomineeringMove> {
+		private final Board2<DomineeringMove> board;
+
+		/**
+		 * @param board The board to search from.
+		 */
+		private BstBoard(Board2<DomineeringMove> board) {
+			this.board = board;
+		}
+
+		@Override
+		Player nextPlayer() {
+			return board.nextPlayer();
+		}
+
+		@Override
+		Set<DomineeringMove> availableMoves() {
+			return board.availableMoves();
+		}
+
+		@Override
+		int value() {
+			return board.value();
+		}
+
+		@Override
+		Board2<DomineeringMove> play(DomineeringMove move) {
+			return new BstBoard(board.play(move));
+		}
+
+		@Override
+		int heuristicValue() {
+			return board.heuristicValue();
+		}
+
+		@Override
+		public String toString() {
+			return board.toString();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if(args.length > 0 && args[0].equals("generate")) {
+			generate(args.length > 1 ? args[1] : DEFAULT_FILE);
+			return;
+		}
+
+		String       file   = (args.length > 0 ? args[0] : DEFAULT_FILE);
+		List<String> names  = new ArrayList<String>(Arrays.asList(args).subList(Math.min(1, args.length), args.length));
+		Map<String, ToIntFunction<DomineeringBoard2>> variants = variants();
+		if(names.isEmpty()) {
+			names.addAll(variants.keySet());
+		}
+
+		List<Corpus> corpus   = read(file);
+		boolean      exploded = false;
+		System.out.println("variant,position,value,nodes,baseline_nodes,ms");
+		for(String name : names) {
+			ToIntFunction<DomineeringBoard2> variant = variants.get(name);
+			if(variant == null) {
+				System.err.println("No such variant: " + name + " (there are " + variants.keySet() + ")");
+				System.exit(1);
+			}
+			for(Corpus p : corpus) {
+				DomineeringBoard2 board = DomineeringBoard2.replay(p.columns, p.rows, p.moves);
+				long nodes = SearchStats.snapshot().nodes();
+				long start = System.nanoTime();
+				int  value = variant.applyAsInt(board);
+				long nanos = System.nanoTime() - start;
+				nodes = SearchStats.snapshot().nodes() - nodes;
+
+				System.out.printf("%s,%s,%d,%d,%d,%.3f%n", name, p.key(), value, nodes, p.nodes, nanos / 1e6);
+				if(value != p.value) {
+					System.err.println("WRONG " + name + " " + p.key() + ": " + value + ", should be " + p.value);
+					System.exit(1);
+				}
+				if(nodes > p.nodes * EXPLOSION + SLACK) {
+					System.err.println("NODES " + name + " " + p.key() + ": " + nodes + ", was " + p.nodes);
+					exploded = true;
+				}
+			}
+		}
+		System.exit(exploded ? 2 : 0);
+	}
+
+	/**
+	 * Writes a new corpus, solving positions with Board2.tree. The positions
+	 * are the same on every run; their values and node counts are whatever
+	 * the engine computes now, so only regenerate from an engine known to be
+	 * right.
+	 * @param file Where to write it.
+	 */
+	private static void generate(String file) throws IOException {
+		Random random = new Random(1);
+		try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(file)))) {
+			out.println("# columns rows value nodes moves... (generated by java Corpus generate)");
+			for(int[] size : SIZES) {
+				Set<String> seen = new LinkedHashSet<String>();
+				for(int plies = 0; plies <= size[0] * size[1] / 4; plies++) {
+					for(int s = 0; s < SAMPLES; s++) {
+						List<String> moves = opening(size[0], size[1], plies, random);
+						if(moves == null || !seen.add(String.join(" ", moves))) {
+							continue; //game over early, or a position already in the corpus
+						}
+						DomineeringBoard2 board = DomineeringBoard2.replay(size[0], size[1], moves);
+						long nodes = SearchStats.snapshot().nodes();
+						int  value = board.tree(-10, -1, 1, false).optimalOutcome();
+						nodes = SearchStats.snapshot().nodes() - nodes;
+						out.println(new Corpus(size[0], size[1], value, nodes, moves));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Random moves from the empty board.
+	 * @param columns Number of columns.
+	 * @param rows    Number of rows.
+	 * @param plies   How many moves to play.
+	 * @param random  Where to get the moves from.
+	 * @return The moves as "x,y", or null if the game ended first.
+	 */
+	private static List<String> opening(int columns, int rows, int plies, Random random) {
+		Board2<DomineeringMove> board = new DomineeringBoard2(columns, rows);
+		List<String>            moves = new ArrayList<String>();
+		for(int i = 0; i < plies; i++) {
+			Set<DomineeringMove> available = board.availableMoves();
+			if(available.isEmpty()) {
+				return null;
+			}
+			Iterator<DomineeringMove> it = available.iterator();
+			for(int skip = random.nextInt(available.size()); skip > 0; skip--) {
+				it.next();
+			}
+			DomineeringMove m = it.next();
+			moves.add(PackedMove.toString(PackedMove.of(m, board.nextPlayer(), columns)));
+			board = board.play(m);
+		}
+		return moves;
+	}
+
+	/**
+	 * Reads a corpus.
+	 * @param file The corpus file.
+	 * @return Its positions.
+	 */
+	private static List<Corpus> read(String file) throws IOException {
+		List<Corpus> corpus = new ArrayList<Corpus>();
+		for(String line : Files.readAllLines(Paths.get(file))) {
+			if(line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] f = line.trim().split("\\s+");
+			corpus.add(new Corpus(Integer.parseInt(f[0]), Integer.parseInt(f[1]), Integer.parseInt(f[2]),
+					Long.parseLong(f[3]), Arrays.asList(f).subList(4, f.length)));
+		}
+		return corpus;
+	}
+
+	/**
+	 * @return The position as the size and moves, e.g. "4x4 0,0 1,2".
+	 */
+	private String key() {
+		return columns + "x" + rows + (moves.isEmpty() ? "" : " " + String.join(" ", moves));
+	}
+
+	@Override
+	/**
+	 * The position as a line of the corpus file.
+	 * @return The line.
+	 */
+	public String toString() {
+		return columns + " " + rows + " " + value + " " + nodes + (moves.isEmpty() ? "" : " " + String.join(" ", moves));
+	}
+}
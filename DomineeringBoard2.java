@@ -1,4 +1,7 @@
-import java.util.LinkedHashSet;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -16,29 +19,49 @@ import java.util.Set;
  *         This means that for any size board, the positions are numbered
  *         from 1 to rows*columns where m is the number of rows and n is
  *         the number of columns.
+ *         <p>
+ *         Each player's covered positions are kept as a bitboard: every row
+ *         is stored in (columns + 63) / 64 longs, column c of a row being bit
+ *         c % 64 of its word c / 64. Moves are found a whole word at a time -
+ *         a horizontal move needs a free position and a free position to its
+ *         right (the next word's first bit carries into the last bit of a
+ *         word), and a vertical move needs the same bit free in a row and the
+ *         row below - so boards of any size stay fast.
  */
 public class DomineeringBoard2 extends Board2<DomineeringMove> {
 
     public static final Player H = Player.MAXIMIZER;
     public static final Player V = Player.MINIMIZER;
 
-    private final LinkedHashSet<DomineeringMove> hMoves;  //moves played by H
-    private final LinkedHashSet<DomineeringMove> vMoves;  //moves played by V
+    private static final int TREE_PLIES = 2; //the computer's move and the reply - enough to play a turn from
+
+    private static final int GRADED     = 1; //options: heuristic values are move differences rather than 1 or -1
+    private static final int QUIESCENCE = 2; //         swing moves are searched past the horizon
+    private static final int REDUCTIONS = 4; //         late moves are searched less deeply
+    private static final int FUTILITY   = 8; //         moves which cannot matter at the frontier are skipped
+
+    private static final int QUIESCENCE_NODES = 4; //most nodes searched past one horizon position - more costs more than it gains
+
+    private static final ThreadLocal<MutableDomineeringBoard> SEARCH
+        = ThreadLocal.withInitial(MutableDomineeringBoard::new); //one reusable board per search thread
 
-    private final int size; //number of total positions
-    private final int rows;
-    private final int columns;
+    private final long[] hCells; //positions covered by H, row by row
+    private final long[] vCells; //positions covered by V, row by row
+
+    private final int  size; //number of total positions
+    private final int  rows;
+    private final int  columns;
+    private final int  words; //longs per row
+    private final long lastWord; //mask of the columns in the last word of a row
+    private final int  plies; //number of moves played
+    private final long hash; //Zobrist hash of the dimensions and each player's positions
+    private final int  options; //which of GRADED, QUIESCENCE, ... are on
 
     /**
      * Default configuration with no parameters.
      */
     public DomineeringBoard2() {
-        columns = 4;
-        rows = 4;
-        size = rows * columns;
-
-        hMoves = new LinkedHashSet<DomineeringMove>();
-        vMoves = new LinkedHashSet<DomineeringMove>();
+        this(4, 4);
     }
 
     /**
@@ -46,36 +69,101 @@ public class DomineeringBoard2 extends Board2<DomineeringMove> {
      * @param n Number of rows.
      */
     public DomineeringBoard2(int m, int n) {
+        this(m, n, false);
+    }
+
+    /**
+     * @param m      Number of columns.
+     * @param n      Number of rows.
+     * @param graded Whether heuristic values are graded (see heuristicValue()).
+     * @throws IllegalArgumentException If m or n is negative or the board has
+     *         more than PackedMove.MAX_POSITION positions, which moves could
+     *         not be packed for.
+     */
+    public DomineeringBoard2(int m, int n, boolean graded) {
+        if(m < 0 || n < 0 || (long) m * n > PackedMove.MAX_POSITION) {
+            throw new IllegalArgumentException("Cannot play on a " + m + "x" + n + " board: at most "
+                    + PackedMove.MAX_POSITION + " positions");
+        }
         columns = m;
         rows = n;
         size = rows * columns;
+        DomineeringMove.reserve(size + columns); //every position the search probes, including just off the board
 
-        hMoves = new LinkedHashSet<DomineeringMove>();
-        vMoves = new LinkedHashSet<DomineeringMove>();
+        words = (columns + 63) / 64;
+        lastWord = (columns % 64 == 0 ? -1L : (1L << (columns % 64)) - 1);
+        hCells = new long[rows * words];
+        vCells = new long[rows * words];
+        plies = 0;
+        hash = mix(((long) columns << 32) | rows);
+        options = (graded ? GRADED : 0);
     }
 
     /**
-     * @param hMoves Moves H has made.
-     * @param vMoves Moves V has made.
-     * @param m      Number of columns.
-     * @param n      Number of rows.
-     * @param size   Number of positions.
+     * @param board   The board this one is made from.
+     * @param hCells  Positions H covers.
+     * @param vCells  Positions V covers.
+     * @param hash    Zobrist hash of the board.
+     * @param plies   Number of moves played.
+     * @param options The search options.
      */
-    private DomineeringBoard2(LinkedHashSet<DomineeringMove> hMoves, LinkedHashSet<DomineeringMove> vMoves,
-                              int m, int n, int size) {
+    private DomineeringBoard2(DomineeringBoard2 board, long[] hCells, long[] vCells, long hash, int plies,
+                              int options) {
         try {
-            assert (disjoint(hMoves, vMoves));
+            assert (disjoint(hCells, vCells));
         }
         catch(AssertionError e) {
-            System.err.println("Assertion violated: 'disjoint(hMoves, vMoves)' in constructor for DomineeringBoard2");
+            System.err.println("Assertion violated: 'disjoint(hCells, vCells)' in constructor for DomineeringBoard2");
             System.exit(1);
         }
 
-        this.hMoves = hMoves;
-        this.vMoves = vMoves;
-        this.columns = m;
-        this.rows = n;
-        this.size = size;
+        this.hCells = hCells;
+        this.vCells = vCells;
+        this.columns = board.columns;
+        this.rows = board.rows;
+        this.size = board.size;
+        this.words = board.words;
+        this.lastWord = board.lastWord;
+        this.plies = plies;
+        this.hash = hash;
+        this.options = options;
+    }
+
+    /**
+     * The board reached by playing moves from the empty board, H first.
+     *
+     * @param m     Number of columns.
+     * @param n     Number of rows.
+     * @param moves Moves as "x,y", the coordinates of the top/left position covered.
+     * @return The board with the moves played on it.
+     * @throws IllegalArgumentException If m or n is not positive, or a move is
+     *         malformed or cannot be played.
+     */
+    public static DomineeringBoard2 replay(int m, int n, Iterable<String> moves) {
+        if(m <= 0 || n <= 0) {
+            throw new IllegalArgumentException("Not a board: " + m + "x" + n);
+        }
+        Board2<DomineeringMove> board = new DomineeringBoard2(m, n);
+        for(String move : moves) {
+            int comma = move.indexOf(',');
+            int x, y;
+            try {
+                x = Integer.parseInt(move.substring(0, comma));
+                y = Integer.parseInt(move.substring(comma + 1));
+            }
+            catch(NumberFormatException | StringIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Not a move: " + move);
+            }
+            if(x < 0 || x >= m || y < 0 || y >= n) { //before of(), so x + m * y cannot overflow
+                throw new IllegalArgumentException("Cannot play " + move + " on\n" + board);
+            }
+            DomineeringMove d = DomineeringMove.of(x + m * y + 1);
+            if(!board.availableMoves().contains(d)) {
+                throw new IllegalArgumentException("Cannot play " + move + " on\n" + board);
+            }
+            board = board.play(d);
+        }
+        return (DomineeringBoard2) board;
     }
 
     @Override
@@ -84,23 +172,17 @@ public class DomineeringBoard2 extends Board2<DomineeringMove> {
      * @return The next player.
      */
     Player nextPlayer() {
-        return (hMoves.size() + vMoves.size()) % 4 == 0 ? H : V;
-        //As horizontal is first, they will cover 2 positions so (size % 4 != 0) making it vertical's turn etc.
+        return plies % 2 == 0 ? H : V; //horizontal is first
     }
 
     @Override
     /**
-     * Finds the available moves for a player.
+     * Finds the available moves for a player. Once the game is over the
+     * player to move has none.
      * @return A set of available moves.
      */
     Set<DomineeringMove> availableMoves() {
-        return (value() == 0
-			     ? (nextPlayer() == H ? playerAvailableMoves(H) : playerAvailableMoves(V))
-                             : new LinkedHashSet<DomineeringMove>());
-
-        /*return (value() == 0
-                ? complement(union(hMoves, vMoves)) //all moves that are not in hMoves and vMoves
-                : new LinkedHashSet<DomineeringMove>());*/
+        return playerAvailableMoves(nextPlayer());
     }
 
     /**
@@ -111,45 +193,100 @@ public class DomineeringBoard2 extends Board2<DomineeringMove> {
      * @return A set of that player's moves.
      */
     public Set<DomineeringMove> playerAvailableMoves(Player player) {
-        LinkedHashSet<DomineeringMove> a     = new LinkedHashSet<DomineeringMove>();
-        LinkedHashSet<DomineeringMove> union = union(hMoves, vMoves);
-        if(player == H && (size != 0)) {
-            for(int i = 1; i <= size; i++) {
-                if(!union.contains(new DomineeringMove(i)) && !union.contains(new DomineeringMove(i + 1))) {
-                    if(i % columns != 0) {
-                        a.add(new DomineeringMove(i));  //only add if i isn't in the farthest right column
-                    }
+        return new MoveSet(player);
+    }
+
+    /**
+     * The positions of a player's moves.
+     *
+     * @param player The player.
+     * @return The positions, in increasing order.
+     */
+    private int[] movePositions(Player player) {
+        int[] moves = new int[countMoves(player)];
+        int   n     = 0;
+        for(int r = 0; r < rows; r++) {
+            for(int w = 0; w < words; w++) {
+                for(long bits = anchors(player, r, w); bits != 0; bits &= bits - 1) {
+                    moves[n++] = r * columns + w * 64 + Long.numberOfTrailingZeros(bits) + 1;
                 }
             }
         }
-        else if (size != 0) {
-            for(int i = 1; i <= (size - columns); i++) { //only add up to penultimate row
-                if(!union.contains(new DomineeringMove(i)) && !union.contains(new DomineeringMove(i + columns))) {
-                    a.add(new DomineeringMove(i));
+        return moves;
+    }
+
+    /**
+     * The number of moves a player has, without listing them.
+     *
+     * @param player The player to count the moves of.
+     * @return The number of moves.
+     */
+    public int countMoves(Player player) {
+        int count = 0;
+        for(int r = 0; r < rows; r++) {
+            for(int w = 0; w < words; w++) {
+                count += Long.bitCount(anchors(player, r, w));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Whether a player has any move, stopping at the first one found.
+     *
+     * @param player The player.
+     * @return A boolean for whether they can move.
+     */
+    private boolean hasMoves(Player player) {
+        for(int r = 0; r < rows; r++) {
+            for(int w = 0; w < words; w++) {
+                if(anchors(player, r, w) != 0) {
+                    return true;
                 }
             }
         }
-        return a;
+        return false;
+    }
+
+    /**
+     * The positions of one word of a row where a player could place the
+     * top/left half of a domino.
+     *
+     * @param player The player.
+     * @param r      The row, from 0.
+     * @param w      The word of the row, from 0.
+     * @return A bit for every move anchored in the word.
+     */
+    private long anchors(Player player, int r, int w) {
+        long free = free(r, w);
+        if(player == H) {
+            long right = (w + 1 < words ? free(r, w + 1) << 63 : 0); //first column of the next word
+            return free & ((free >>> 1) | right);
+        }
+        else {
+            return (r + 1 < rows ? free & free(r + 1, w) : 0);
+        }
+    }
+
+    /**
+     * @param r The row, from 0.
+     * @param w The word of the row, from 0.
+     * @return The free positions in the word.
+     */
+    private long free(int r, int w) {
+        int i = r * words + w;
+        return ~(hCells[i] | vCells[i]) & (w == words - 1 ? lastWord : -1L);
     }
 
     @Override
     /**
      * The value of the game state (0 is still playing, 1 is H wins, -1 is V wins).
+     * The player to move loses when they have no moves left.
      * @return The value of the game state.
      */
     int value() {
-    	//return (loses(H) && nextPlayer() == H) ? -1
-	//			   : (loses(V) && nextPlayer() == V ? 1 
-	//					   			: 0);
-    	if(loses(H) && nextPlayer() == H) {
-        	return -1;
-        }
-        else if(loses(V) && nextPlayer() == V) {
-        	return 1;
-        }
-        else {
-        	return 0;
-        }
+        Player next = nextPlayer();
+        return hasMoves(next) ? 0 : (next == H ? -1 : 1);
     }
 
     @Override
@@ -160,21 +297,287 @@ public class DomineeringBoard2 extends Board2<DomineeringMove> {
      */
     Board2<DomineeringMove> play(DomineeringMove move) {
         try {
-            assert (!hMoves.contains(move) && !vMoves.contains(move));
+            assert (!covered(move.getMove()));
         }
         catch(AssertionError e) {
-            System.err.println("Assertion violated: '!hMoves.contains(move) && !vMoves.contains(move)' in 'play'");
+            System.err.println("Assertion violated: '!covered(move)' in 'play'");
             System.exit(1);
         }
 
-        if(nextPlayer() == H) {
-            return new DomineeringBoard2(add(hMoves, move, new DomineeringMove(move.getMove() + 1)), vMoves,
-                                         columns, rows, size);
+        int    packed  = PackedMove.of(move, nextPlayer(), columns);
+        Player player  = PackedMove.player(packed);
+        int    second  = PackedMove.second(packed); //right of or below move
+        long   newHash = hash ^ zobrist(player, move.getMove()) ^ zobrist(player, second);
+
+        long[] cells = (player == H ? hCells : vCells).clone(); //the other player's cells are shared
+        cover(cells, move.getMove());
+        cover(cells, second);
+        return (player == H ? new DomineeringBoard2(this, cells, vCells, newHash, plies + 1, options)
+                            : new DomineeringBoard2(this, hCells, cells, newHash, plies + 1, options));
+    }
+
+    @Override
+    /**
+     * Children are keyed by position, so they are stored in an IntTable.
+     * @return An empty table of subtrees.
+     */
+    Table<DomineeringMove, GameTree2<DomineeringMove>> emptyTable() {
+        return new IntTable<GameTree2<DomineeringMove>>();
+    }
+
+    @Override
+    /**
+     * Exact trees only need nodes for the next turn; the rest is searched
+     * without building boards or trees.
+     * @return The number of plies of nodes to build.
+     */
+    int treePlies() {
+        return TREE_PLIES;
+    }
+
+    @Override
+    /**
+     * Looks the outcome up if every position of this size has been solved
+     * (see RetrogradeSolver.install()) or this position is in the installed
+     * SolvedCache, and otherwise searches on this thread's
+     * MutableDomineeringBoard, which makes and unmakes moves in place, and
+     * adds the outcome to the cache.
+     * @param level The current depth.
+     * @param alpha The lower bound.
+     * @param beta  The upper bound.
+     * @return The optimal outcome.
+     */
+    int outcome(int level, int alpha, int beta) {
+        RetrogradeSolver solved = RetrogradeSolver.installed(columns, rows);
+        if(solved != null) { //every position of this size is already solved
+            SearchStats.local().tableHits++;
+            return solved.value(this);
         }
-        else {
-            return new DomineeringBoard2(hMoves, add(vMoves, move, new DomineeringMove(move.getMove() + columns)),
-                                         columns, rows, size);
+        MutableDomineeringBoard board = SEARCH.get();
+        board.set(columns, rows, hCells, vCells, plies);
+        SolvedCache cache = SolvedCache.installed();
+        if(cache == null) {
+            return board.search(level, alpha, beta);
+        }
+        long hash   = board.canonicalHash();
+        int  cached = cache.get(hash);
+        if(cached != 0) { //solved before, maybe by another process
+            SearchStats.local().tableHits++;
+            return cached;
+        }
+        SearchStats.local().tableMisses++;
+        int outcome = board.search(level, alpha, beta);
+        if(alpha <= -1 && beta >= 1) { //otherwise it may only be a bound
+            cache.put(hash, outcome);
+        }
+        return outcome;
+    }
+
+    /**
+     * This position with graded heuristic values. It is equal to this board,
+     * and every board played from it is graded too.
+     *
+     * @return A graded copy of this board.
+     */
+    public DomineeringBoard2 graded() {
+        return with(GRADED);
+    }
+
+    /**
+     * This position with the heuristic search looking past its horizon along
+     * swing moves (see horizonValue()). It is equal to this board, and every
+     * board played from it does the same.
+     *
+     * @return A copy of this board which searches swing moves.
+     */
+    public DomineeringBoard2 quiescent() {
+        return with(QUIESCENCE);
+    }
+
+    /**
+     * This position with moves searched in order of how many of the
+     * opponent's moves they take for how few of the mover's own, and the
+     * heuristic search reducing late moves (see Board2.reducesLateMoves()).
+     * It is equal to this board, and every board played from it does the same.
+     *
+     * @return A copy of this board which reduces late moves.
+     */
+    public DomineeringBoard2 lateMoveReductions() {
+        return with(REDUCTIONS);
+    }
+
+    /**
+     * This position with futility pruning (see Board2.futilityMargin()),
+     * which only prunes graded boards. It is equal to this board, and every
+     * board played from it does the same.
+     *
+     * @return A copy of this board which prunes futile moves.
+     */
+    public DomineeringBoard2 futilityPruning() {
+        return with(FUTILITY);
+    }
+
+    /**
+     * @param option An option.
+     * @return This position with the option on.
+     */
+    private DomineeringBoard2 with(int option) {
+        return ((options & option) != 0 ? this : new DomineeringBoard2(this, hCells, vCells, hash, plies, options | option));
+    }
+
+    @Override
+    /**
+     * A quiescent board keeps searching swing moves, which take at least two
+     * more of the opponent's moves than of the mover's own, until there are
+     * none left or QUIESCENCE_NODES nodes have been searched. Either player
+     * may instead settle for heuristicValue(). Other boards just return it.
+     * @param alpha The lower bound.
+     * @param beta  The upper bound.
+     * @return The value of the position.
+     */
+    int horizonValue(int alpha, int beta) {
+        if((options & QUIESCENCE) == 0) {
+            return heuristicValue();
+        }
+        MutableDomineeringBoard board = SEARCH.get();
+        board.set(columns, rows, hCells, vCells, plies);
+        return board.quiescence(alpha, beta, (options & GRADED) != 0, maxOutcome(), QUIESCENCE_NODES);
+    }
+
+    @Override
+    /**
+     * With late move reductions the moves that gain the most come first.
+     * @return The available moves, best first.
+     */
+    Iterable<DomineeringMove> searchOrder() {
+        if((options & REDUCTIONS) == 0) {
+            return availableMoves();
         }
+        MutableDomineeringBoard board = SEARCH.get();
+        board.set(columns, rows, hCells, vCells, plies);
+        int[]             order = board.ordered();
+        DomineeringMove[] moves = new DomineeringMove[order.length];
+        for(int i = 0; i < order.length; i++) {
+            moves[i] = DomineeringMove.of(order[i]);
+        }
+        return Arrays.asList(moves);
+    }
+
+    @Override
+    /**
+     * @return True if late move reductions are on.
+     */
+    boolean reducesLateMoves() {
+        return (options & REDUCTIONS) != 0;
+    }
+
+    @Override
+    /**
+     * A move changes the difference in moves by at most MAX_SWING, unless it
+     * leaves the opponent without a move - which it cannot while they have
+     * more than the four one move can take. So without quiescence the pruning
+     * never changes an outcome.
+     * @return The margin, or 0 not to prune.
+     */
+    int futilityMargin() {
+        if((options & (FUTILITY | GRADED)) != (FUTILITY | GRADED)) {
+            return 0;
+        }
+        return (countMoves(nextPlayer() == H ? V : H) > 4 ? MutableDomineeringBoard.MAX_SWING : 0);
+    }
+
+    /**
+     * @return Number of columns.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return Number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * The positions covered by either player as the bits of one long, bit
+     * p - 1 being set if position p is covered. Only for boards of at most 64
+     * positions.
+     *
+     * @return The covered positions.
+     */
+    long coveredBits() {
+        assert (size <= 64);
+        long covered = 0;
+        for(int r = 0; r < rows; r++) {
+            covered |= (hCells[r] | vCells[r]) << (r * columns);
+        }
+        return covered;
+    }
+
+    /**
+     * A 64-bit Zobrist hash of the position. It is kept up to date by play() in
+     * O(1), so it is cheap enough to key caches of positions on.
+     *
+     * @return The hash of this board.
+     */
+    public long zobristHash() {
+        return hash;
+    }
+
+    @Override
+    /**
+     * Two boards are equal if they have the same dimensions and each player
+     * covers the same positions.
+     * @param obj An object.
+     * @return A boolean saying whether this is equal to obj.
+     */
+    public boolean equals(Object obj) {
+        if(obj == this) {
+            return true;
+        }
+        if(!(obj instanceof DomineeringBoard2)) {
+            return false;
+        }
+        DomineeringBoard2 other = (DomineeringBoard2) obj;
+        return hash == other.hash && columns == other.columns && rows == other.rows
+               && Arrays.equals(hCells, other.hCells) && Arrays.equals(vCells, other.vCells); //hash first - it usually decides
+    }
+
+    @Override
+    /**
+     * Folds the Zobrist hash into an int.
+     * @return An int for the hashcode.
+     */
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * The Zobrist key for a player covering a position. The keys are computed
+     * from the position rather than drawn from a random table, so every
+     * process agrees on them and any board size is covered.
+     *
+     * @param player   The player covering the position.
+     * @param position A position on the board.
+     * @return A pseudo-random 64-bit key.
+     */
+    static long zobrist(Player player, int position) {
+        return mix(2L * position + (player == H ? 0 : 1));
+    }
+
+    /**
+     * The splitmix64 finaliser, which spreads the bits of x over the whole word.
+     *
+     * @param x A value to mix.
+     * @return A well-mixed 64-bit value.
+     */
+    static long mix(long x) {
+        x += 0x9E3779B97F4A7C15L;
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
     }
 
     @Override
@@ -183,144 +586,202 @@ public class DomineeringBoard2 extends Board2<DomineeringMove> {
      * @return The current board.
      */
     public String toString() {
-        String displayBoard = "";
-        int    counter      = 1;
+        StringBuilder displayBoard = new StringBuilder(rows * (2 * columns + 1));
+        int           counter      = 1;
         for(int i = 1; i <= rows; i++) {
             for(int j = 1; j <= columns; j++) {
-                displayBoard += pm(new DomineeringMove(counter));
+                displayBoard.append(pm(counter));
                 counter++;
             }
-            displayBoard += "\n";
+            displayBoard.append("\n");
         }
-        return displayBoard;
+        return displayBoard.toString();
     }
 
     /**
      * Prints a player if they have moved in a particular position.
      *
-     * @param m A move.
+     * @param position A position.
      * @return A string with who moved.
      */
-    private String pm(DomineeringMove m) {
-        return (hMoves.contains(m) ? "H " : vMoves.contains(m) ? "V " : "- ");
+    private String pm(int position) {
+        return (covered(hCells, position) ? "H " : covered(vCells, position) ? "V " : "- ");
     }
 
     /**
-     * Determine if a player has lost based on their available moves.
+     * Whether either player covers a position.
      *
-     * @return A boolean for whether a player has lost.
+     * @param position A position.
+     * @return A boolean for whether it is covered.
      */
-    private boolean loses(Player player) {
-        if(player == H) {
-            if(playerAvailableMoves(player).isEmpty() && !playerAvailableMoves(V).isEmpty()) {
-                return true;
-            }
-            else if(!playerAvailableMoves(player).isEmpty() && playerAvailableMoves(V).isEmpty()) {
-                return false;
-            }
-            else if(playerAvailableMoves(player).isEmpty() && playerAvailableMoves(V).isEmpty()) {
-                return nextPlayer() == player;
-            }
-            else {
-                return false;
-            }
-        }
-        else {
-            if(playerAvailableMoves(player).isEmpty() && !playerAvailableMoves(H).isEmpty()) {
-                return true;
-            }
-            else if(!playerAvailableMoves(player).isEmpty() && playerAvailableMoves(H).isEmpty()) {
-                return false;
-            }
-            else if(playerAvailableMoves(player).isEmpty() && playerAvailableMoves(H).isEmpty()) {
-
-                return nextPlayer() == player;
-            }
-            else {
-                return false;
-            }
-        }
+    private boolean covered(int position) {
+        return covered(hCells, position) || covered(vCells, position);
     }
 
     /**
-     * Returns the intersection of 2 sets a and b.
+     * Whether a position is set in some cells.
      *
-     * @param a A set.
-     * @param b A set.
-     * @return The intersection of the 2 sets.
-     */
-    private LinkedHashSet<DomineeringMove> intersection(LinkedHashSet<DomineeringMove> a,
-                                                        LinkedHashSet<DomineeringMove> b) {
-        LinkedHashSet<DomineeringMove> c = new LinkedHashSet<DomineeringMove>();
-        for(int i = 1; i <= size; i++) {
-            if(a.contains(new DomineeringMove(i)) && b.contains(new DomineeringMove(i))) {
-                c.add(new DomineeringMove(i));
-            }
-        }
-        return c;
+     * @param cells    One player's cells.
+     * @param position A position.
+     * @return A boolean for whether it is set.
+     */
+    private boolean covered(long[] cells, int position) {
+        int c = (position - 1) % columns;
+        return (cells[((position - 1) / columns) * words + c / 64] & (1L << c)) != 0;
     }
 
     /**
-     * Checks to see whether the 2 sets a and b are disjoint.
+     * Sets a position in some cells.
      *
-     * @param a A set of moves.
-     * @param b A set of moves.
-     * @return A boolean as to whether the 2 sets are disjoint.
+     * @param cells    One player's cells.
+     * @param position A position.
      */
-    private boolean disjoint(LinkedHashSet<DomineeringMove> a, LinkedHashSet<DomineeringMove> b) {
-        return (intersection(a, b).isEmpty());
+    private void cover(long[] cells, int position) {
+        int c = (position - 1) % columns;
+        cells[((position - 1) / columns) * words + c / 64] |= 1L << c;
     }
 
     /**
-     * Constructs the union of the 2 sets a and b.
+     * Checks to see whether the 2 players' cells are disjoint.
      *
-     * @param a A set.
-     * @param b A set.
-     * @return The union of the 2 sets.
-     */
-    private LinkedHashSet<DomineeringMove> union(LinkedHashSet<DomineeringMove> a,
-                                                 LinkedHashSet<DomineeringMove> b) {
-        LinkedHashSet<DomineeringMove> c = new LinkedHashSet<DomineeringMove>();
-        for(int i = 1; i <= size; i++) {
-            if(a.contains(new DomineeringMove(i))) {
-                c.add(new DomineeringMove(i));
-            }
-        }
-        for(int i = 1; i <= size; i++) {
-            if(b.contains(new DomineeringMove(i))) {
-                c.add(new DomineeringMove(i));
+     * @param a One player's cells.
+     * @param b The other player's cells.
+     * @return A boolean as to whether they share no position.
+     */
+    private static boolean disjoint(long[] a, long[] b) {
+        for(int i = 0; i < a.length; i++) {
+            if((a[i] & b[i]) != 0) {
+                return false;
             }
         }
-        return c;
+        return true;
     }
 
     /**
-     * Adds the move b to the set a.
+     * A way of heuristically calculating what the value of a board is (based on number
+     * of available moves). A graded board returns how many more moves the
+     * maximiser has than the minimiser, so searches can tell a close position
+     * from a lopsided one and narrow their windows (see Engine.aspiration()).
      *
-     * @param a A set.
-     * @param b A DomineeringMove object.
-     * @param c A DomineeringMove object.
-     * @return The set a with the move b and c added to it.
-     */
-    private LinkedHashSet<DomineeringMove> add(LinkedHashSet<DomineeringMove> a, DomineeringMove b, DomineeringMove c) {
-        LinkedHashSet<DomineeringMove> d = new LinkedHashSet<DomineeringMove>();
-        for(int i = 1; i <= size; i++) {
-            if(a.contains(new DomineeringMove(i))) {
-                d.add(new DomineeringMove(i));
-            }
+     * @return 1 if the maximiser has more moves than the minimiser, -1 otherwise,
+     *         or the difference if the board is graded.
+     */
+    public int heuristicValue() {
+        int h, v;
+        if(words == 1) {
+            long counts = narrowCounts(); //both counts in one pass
+            h = (int) (counts >>> 32);
+            v = (int) counts;
         }
-        d.add(new DomineeringMove(b.getMove()));
-        d.add(new DomineeringMove(c.getMove()));
-        return d;
+        else {
+            h = countMoves(H);
+            v = countMoves(V);
+        }
+        return ((options & GRADED) != 0 ? h - v : h > v ? 1 : -1);
     }
 
+    @Override
     /**
-     * A way of heuristically calculating what the value of a board is (based on number
-     * of available moves).
+     * A graded board scores a win above any difference in moves.
+     * @return The value of the finished game.
+     */
+    int terminalValue() {
+        return value() * maxOutcome();
+    }
+
+    @Override
+    /**
+     * A player has fewer moves than there are positions, so a graded board's
+     * outcomes lie within one more than that.
+     * @return The largest outcome.
+     */
+    int maxOutcome() {
+        return ((options & GRADED) != 0 ? size + 1 : 1);
+    }
+
+    /**
+     * Counts both players' moves on a board whose rows fit in one word. Each
+     * row's free positions are worked out once: H's moves are the free
+     * positions with a free position to their right and V's are the free
+     * positions also free in the row below.
      *
-     * @return The size of the maximiser's available moves.
+     * @return H's count in the high 32 bits and V's in the low 32 bits.
      */
-    public int heuristicValue() {
-        return (playerAvailableMoves(H).size() > playerAvailableMoves(V).size() ? 1 : -1);
+    private long narrowCounts() {
+        int  h    = 0;
+        int  v    = 0;
+        long free = (rows > 0 ? ~(hCells[0] | vCells[0]) & lastWord : 0);
+        for(int r = 0; r < rows; r++) {
+            long below = (r + 1 < rows ? ~(hCells[r + 1] | vCells[r + 1]) & lastWord : 0);
+            h += Long.bitCount(free & (free >>> 1));
+            v += Long.bitCount(free & below);
+            free = below;
+        }
+        return ((long) h << 32) | v;
+    }
+
+    /**
+     * The moves of a player, in increasing order of position. The moves are
+     * only listed when the set is first iterated over or searched, as an
+     * int[] of positions turned into DomineeringMoves one at a time, and
+     * isEmpty() stops at the first move it finds - the search asks whether
+     * every node has moves, and a large board has thousands.
+     */
+    private final class MoveSet extends AbstractSet<DomineeringMove> {
+        private final Player player;
+        private int[]        positions; //null until needed
+
+        /**
+         * @param player The player whose moves these are.
+         */
+        private MoveSet(Player player) {
+            this.player = player;
+        }
+
+        /**
+         * @return The positions of the moves, in increasing order.
+         */
+        private int[] positions() {
+            if(positions == null) {
+                positions = movePositions(player);
+            }
+            return positions;
+        }
+
+        @Override
+        public Iterator<DomineeringMove> iterator() {
+            int[] moves = positions();
+            return new Iterator<DomineeringMove>() {
+                private int i;
+
+                @Override
+                public boolean hasNext() {
+                    return i < moves.length;
+                }
+
+                @Override
+                public DomineeringMove next() {
+                    if(i == moves.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return DomineeringMove.of(moves[i++]);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return (positions == null ? countMoves(player) : positions.length);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return (positions == null ? !hasMoves(player) : positions.length == 0);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return (o instanceof DomineeringMove && Arrays.binarySearch(positions(), ((DomineeringMove) o).getMove()) >= 0);
+        }
     }
 }
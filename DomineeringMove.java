@@ -6,16 +6,55 @@
  */
 public class DomineeringMove implements Comparable<DomineeringMove> {
 
+	public static final int MAX_CACHED = 1 << 22; //a 2048x2048 board; larger positions are not cached
+
+	private static volatile DomineeringMove[] cache = new DomineeringMove[0]; //cache[i] is the move for position i
+
 	private final int move;
 
 	/**
 	 * Saves the position into the move.
 	 * @param position A position on the game board.
 	 */
-	public DomineeringMove(int position) {
+	private DomineeringMove(int position) {
 		this.move = position;
 	}
 
+	/**
+	 * Gets the shared move for a position. A move only holds its position, so
+	 * one cache serves boards of every size. The cache only grows when a
+	 * board reserves its positions, so a position no board has reserved - a
+	 * bad move from outside, say - gets a new move of its own instead.
+	 * @param position A position on the game board.
+	 * @return The DomineeringMove for that position.
+	 */
+	public static DomineeringMove of(int position) {
+		DomineeringMove[] moves = cache;
+		if(position >= 0 && position < moves.length) {
+			return moves[position];
+		}
+		return new DomineeringMove(position); //not on any board made so far - not worth caching
+	}
+
+	/**
+	 * Makes sure positions 0 to n are cached, so that a board of that size
+	 * can look up any of its moves without allocating. Positions from
+	 * MAX_CACHED on are never cached.
+	 * @param n The largest position to cache.
+	 */
+	public static synchronized void reserve(int n) {
+		DomineeringMove[] moves = cache;
+		if(n < moves.length || moves.length == MAX_CACHED) {
+			return;
+		}
+		DomineeringMove[] grown = new DomineeringMove[(int) Math.min(MAX_CACHED, Math.max(n + 1L, 2L * moves.length))];
+		System.arraycopy(moves, 0, grown, 0, moves.length); //keep existing instances so == still holds
+		for(int i = moves.length; i < grown.length; i++) {
+			grown[i] = new DomineeringMove(i);
+		}
+		cache = grown;
+	}
+
 	/**
 	 * Gets the move.
 	 * @return A move as an int.
@@ -40,17 +79,17 @@ public class DomineeringMove implements Comparable<DomineeringMove> {
 	 * @return A boolean saying whether this is equal to obj.
 	 */
 	public boolean equals(Object obj) {
-		return (obj instanceof DomineeringMove ? ((DomineeringMove)obj).getMove() == move : false);
+		return (obj == this || (obj instanceof DomineeringMove && ((DomineeringMove)obj).move == move));
 	}
 
 	@Override
 	/**
-	 * Overrides the default hashcode.
+	 * Overrides the default hashcode. Positions are small and distinct, so
+	 * the position itself is the hash.
 	 * @return An int for the hashcode.
 	 */
 	public int hashCode() {
-		String hash = "" + move;
-		return hash.hashCode();
+		return move;
 	}
 
 	@Override
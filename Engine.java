@@ -0,0 +1,406 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Where a computer player does its searching. Building a game tree is CPU
+ * bound, so when many games share a JVM the searches are handed to a small
+ * pool of platform threads while the threads running the games only wait
+ * on their MoveChannel. The inline engine searches on the calling thread,
+ * which is what a single console game wants.
+ * <p>
+ * An engine can also ponder: while the opponent is thinking, it builds the
+ * trees it will need for each of the opponent's replies, starting with the
+ * replies it expects. When the reply arrives the matching tree is used (or
+ * waited for, if it is still being built) and the others are cancelled.
+ * Pondering engines keep track of one game, so each game needs its own
+ * (see pondering()).
+ * <p>
+ * An engine can also aspire: rather than searching the whole window it
+ * first searches a narrow one around the outcome of its last search, and
+ * widens it step by step on the side the outcome fell outside of. A narrow
+ * window cuts off more, and the outcome after the opponent's reply is
+ * usually close to the one before it. It only helps when outcomes are
+ * graded (see DomineeringBoard2.graded()); with outcomes of 1 and -1 every
+ * window is the whole one. Aspiring engines also keep track of one game
+ * (see aspiration()).
+ */
+public class Engine {
+
+	public static final Engine INLINE = new Engine(null);
+
+	private final ExecutorService search; //null means search on the caller's thread
+	private final ExecutorService ponder; //null means no pondering
+	private final int[]           aspiration; //how far either side of the last outcome to look, null means the whole window
+	private boolean               searched; //whether there is a last outcome
+	private int                   last;     //the outcome of the last tree
+	private final Map<Position, Future<? extends GameTree2<?>>> pondered
+		= new HashMap<Position, Future<? extends GameTree2<?>>>(); //trees built on the opponent's time
+
+	/**
+	 * A position the engine may be asked to build a tree for.
+	 */
+	private static final class Position {
+		private final Board2<?> board;
+		private final int       level;
+
+		/**
+		 * @param board The board.
+		 * @param level The depth the tree will be built to.
+		 */
+		private Position(Board2<?> board, int level) {
+			this.board = board;
+			this.level = level;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return (obj instanceof Position && ((Position) obj).level == level
+					&& ((Position) obj).board.equals(board));
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(board, level);
+		}
+	}
+
+	/**
+	 * @param search The pool to search on, or null to search inline.
+	 */
+	public Engine(ExecutorService search) {
+		this(search, null);
+	}
+
+	/**
+	 * @param search The pool to search on, or null to search inline.
+	 * @param ponder The pool to ponder on, or null not to ponder.
+	 */
+	public Engine(ExecutorService search, ExecutorService ponder) {
+		this(search, ponder, null);
+	}
+
+	/**
+	 * @param search     The pool to search on, or null to search inline.
+	 * @param ponder     The pool to ponder on, or null not to ponder.
+	 * @param aspiration The aspiration steps, or null not to aspire.
+	 */
+	private Engine(ExecutorService search, ExecutorService ponder, int[] aspiration) {
+		this.search = search;
+		this.ponder = ponder;
+		this.aspiration = aspiration;
+	}
+
+	/**
+	 * An engine with a fixed number of daemon search threads.
+	 * @param threads The number of searches that may run at once.
+	 * @return A new engine.
+	 */
+	public static Engine bounded(int threads) {
+		return new Engine(daemons("search", threads));
+	}
+
+	/**
+	 * An engine for one game which searches like this one and ponders on the
+	 * given pool.
+	 * @param ponder The pool to ponder on.
+	 * @return A new engine.
+	 */
+	public Engine pondering(ExecutorService ponder) {
+		return new Engine(search, ponder, aspiration);
+	}
+
+	/**
+	 * An engine for one game which searches like this one but with
+	 * aspiration windows. Each search first looks steps[0] either side of the
+	 * last outcome; if the outcome falls outside, that side is widened to
+	 * steps[1], and so on, and to the whole window once the steps run out.
+	 * How often that happens is counted in SearchStats.
+	 * @param steps How far either side of the last outcome to look, increasing.
+	 * @return A new engine.
+	 */
+	public Engine aspiration(int... steps) {
+		for(int i = 0; i < steps.length; i++) {
+			if(steps[i] <= 0 || (i > 0 && steps[i] <= steps[i - 1])) {
+				throw new IllegalArgumentException("Aspiration steps must be positive and increasing: "
+						+ Arrays.toString(steps));
+			}
+		}
+		return new Engine(search, ponder, steps.clone());
+	}
+
+	/**
+	 * Whether this engine searches with aspiration windows, and so wants
+	 * graded outcomes.
+	 * @return True if aspiration() made it.
+	 */
+	public boolean aspires() {
+		return aspiration != null;
+	}
+
+	/**
+	 * A fixed pool of daemon threads.
+	 * @param name    The prefix of the threads' names.
+	 * @param threads The number of threads.
+	 * @return A new pool.
+	 */
+	public static ExecutorService daemons(String name, int threads) {
+		AtomicInteger count = new AtomicInteger();
+		return Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Builds the game tree of a board (see Board2.tree), or takes it from the
+	 * trees built while pondering.
+	 * @param board     The board to search from.
+	 * @param level     The current depth.
+	 * @param alpha     The lower bound.
+	 * @param beta      The upper bound.
+	 * @param heuristic Whether the game played is heuristic.
+	 * @return A game tree of the board.
+	 */
+	public <Move extends Comparable<Move>> GameTree2<Move> tree(Board2<Move> board, int level, int alpha,
+			int beta, boolean heuristic) {
+		if(!pondered.isEmpty()) {
+			@SuppressWarnings("unchecked")
+			Future<GameTree2<Move>> f = (Future<GameTree2<Move>>) pondered.remove(new Position(board, level));
+			if(f != null) {
+				SearchStats.local().ponderHits++;
+				return remember(await(f));
+			}
+			SearchStats.local().ponderMisses++;
+		}
+		if(aspiration == null || !searched) {
+			return remember(run(board, level, alpha, beta, heuristic));
+		}
+		SearchStats.Counters stats = SearchStats.local();
+		int below = 0; //the step each side of the window has reached
+		int above = 0;
+		for(boolean first = true; ; first = false) {
+			int low  = (below < aspiration.length ? Math.max(alpha, last - aspiration[below]) : alpha);
+			int high = (above < aspiration.length ? Math.min(beta, last + aspiration[above]) : beta);
+			if(first && (low > alpha || high < beta)) {
+				stats.aspirations++;
+			}
+			GameTree2<Move> tree = run(board, level, low, high, heuristic);
+			int outcome = tree.optimalOutcome();
+			if(outcome <= low && low > alpha) { //failed low - the outcome is at most this
+				stats.researches++;
+				below++;
+			}
+			else if(outcome >= high && high < beta) { //failed high
+				stats.researches++;
+				above++;
+			}
+			else {
+				return remember(tree);
+			}
+		}
+	}
+
+	/**
+	 * Builds a game tree on the search pool, or inline if there is none.
+	 * @param board     The board to search from.
+	 * @param level     The current depth.
+	 * @param alpha     The lower bound.
+	 * @param beta      The upper bound.
+	 * @param heuristic Whether the game played is heuristic.
+	 * @return A game tree of the board.
+	 */
+	private <Move extends Comparable<Move>> GameTree2<Move> run(Board2<Move> board, int level, int alpha,
+			int beta, boolean heuristic) {
+		if(search == null) {
+			return search(board, level, alpha, beta, heuristic);
+		}
+		return await(search.submit(() -> search(board, level, alpha, beta, heuristic)));
+	}
+
+	/**
+	 * Keeps the outcome of a tree to aim the next aspiration window at.
+	 * @param tree A tree about to be played from.
+	 * @return The tree.
+	 */
+	private <Move extends Comparable<Move>> GameTree2<Move> remember(GameTree2<Move> tree) {
+		if(aspiration != null) { //engines that do not aspire may be shared between games
+			searched = true;
+			last = tree.optimalOutcome();
+		}
+		return tree;
+	}
+
+	/**
+	 * Builds a game tree on the calling thread, timing it for SearchStats.
+	 * @param board     The board to search from.
+	 * @param level     The current depth.
+	 * @param alpha     The lower bound.
+	 * @param beta      The upper bound.
+	 * @param heuristic Whether the game played is heuristic.
+	 * @return A game tree of the board.
+	 */
+	private static <Move extends Comparable<Move>> GameTree2<Move> search(Board2<Move> board, int level, int alpha,
+			int beta, boolean heuristic) {
+		SearchStats.Counters stats = SearchStats.local();
+		SearchEvent          event = new SearchEvent();
+		long                 nodes = stats.nodes;
+		long                 start = System.nanoTime();
+		event.begin();
+		GameTree2<Move> tree = null;
+		try {
+			tree = board.tree(level, alpha, beta, heuristic);
+			return tree;
+		}
+		finally {
+			stats.searches++;
+			stats.searchNanos += System.nanoTime() - start;
+			event.end();
+			if(event.shouldCommit()) { //only does any work while a recording is on
+				if(board instanceof DomineeringBoard2) {
+					event.columns = ((DomineeringBoard2) board).getColumns();
+					event.rows = ((DomineeringBoard2) board).getRows();
+				}
+				event.level = level;
+				event.heuristic = heuristic;
+				event.nodes = stats.nodes - nodes;
+				if(tree != null) {
+					event.depth = tree.height();
+					event.outcome = tree.optimalOutcome();
+					event.move = tree.optimalEntry().map(e -> String.valueOf(e.getKey())).orElse("");
+				}
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * Builds the game tree of a board after a move (see Board2.newTree).
+	 * @param board     The board to play the move on.
+	 * @param move      The move to play.
+	 * @param level     The current depth.
+	 * @param alpha     The lower bound.
+	 * @param beta      The upper bound.
+	 * @param heuristic Whether the game played is heuristic.
+	 * @return A game tree of the board with the move played.
+	 */
+	public <Move extends Comparable<Move>> GameTree2<Move> newTree(Board2<Move> board, Move move, int level,
+			int alpha, int beta, boolean heuristic) {
+		return tree(board.play(move), level - 1, alpha, beta, heuristic);
+	}
+
+	/**
+	 * Starts building, in the background, the trees that playing on from each
+	 * of the opponent's replies would need: a new tree if the reply is not in
+	 * the game tree, and a deeper one if it leads to a leaf that still has
+	 * moves. The replies the tree expects the opponent to make are started
+	 * first.
+	 * Does nothing if this engine does not ponder.
+	 * @param tree      The game tree, with the opponent to move.
+	 * @param level     The current depth.
+	 * @param alpha     The lower bound.
+	 * @param beta      The upper bound.
+	 * @param heuristic Whether the game played is heuristic.
+	 */
+	public <Move extends Comparable<Move>> void ponder(GameTree2<Move> tree, int level, int alpha, int beta,
+			boolean heuristic) {
+		if(ponder == null) {
+			return;
+		}
+		Table<Move, GameTree2<Move>> children = tree.children();
+		List<Move> expected = new ArrayList<Move>();
+		List<Move> others   = new ArrayList<Move>();
+		for(Move m : tree.Board2().availableMoves()) {
+			boolean best = children.containsKey(m)
+					&& children.get(m).get().optimalOutcome() == tree.optimalOutcome();
+			(best ? expected : others).add(m);
+		}
+		expected.addAll(others);
+
+		for(Move m : expected) {
+			Position position;
+			if(!children.containsKey(m)) {
+				position = new Position(tree.Board2().play(m), level - 1); //what newTree will build
+			}
+			else {
+				GameTree2<Move> child = children.get(m).get();
+				if(!(child.isLeaf() && !child.Board2().availableMoves().isEmpty())) {
+					continue; //the game tree already has everything for this reply
+				}
+				position = new Position(child.Board2(), level); //what the leaf will be rebuilt with
+			}
+			if(!pondered.containsKey(position)) {
+				@SuppressWarnings("unchecked")
+				Board2<Move> board = (Board2<Move>) position.board;
+				pondered.put(position, ponder.submit(() -> search(board, position.level, alpha, beta, heuristic)));
+			}
+		}
+	}
+
+	/**
+	 * Cancels everything pondered except the trees for the opponent's reply,
+	 * once it is known.
+	 * @param board The board the opponent replied on.
+	 * @param move  The opponent's reply.
+	 */
+	public <Move extends Comparable<Move>> void stopPondering(Board2<Move> board, Move move) {
+		if(pondered.isEmpty()) {
+			return;
+		}
+		Board2<Move> reply = board.play(move);
+		Iterator<Map.Entry<Position, Future<? extends GameTree2<?>>>> it = pondered.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<Position, Future<? extends GameTree2<?>>> entry = it.next();
+			if(!entry.getKey().board.equals(reply)) {
+				entry.getValue().cancel(true);
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Stops the search threads once the searches already submitted are done.
+	 */
+	public void shutdown() {
+		if(search != null) {
+			search.shutdown();
+		}
+	}
+
+	/**
+	 * Waits for a search, passing on anything it threw.
+	 * @param f The search.
+	 * @return The tree it built.
+	 */
+	private static <T> T await(Future<T> f) {
+		try {
+			return f.get();
+		}
+		catch(InterruptedException e) {
+			f.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while waiting for a search");
+		}
+		catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if(cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+}
@@ -24,8 +24,11 @@ public class Fork<Key extends Comparable<Key>,Value> implements Bst<Key,Value> {
 		assert(left != null);       // Refuse to work with null pointers.
 		assert(right != null);
 
-		assert(left.smaller(k)); // Refuse to violate the bst property.
-		assert(right.bigger(k)); // So all our objects will really be BSTs.
+		// Refuse to violate the bst property locally. Checking the whole of
+		// left.smaller(k) and right.bigger(k) here would make every put O(n)
+		// with assertions on, so the full property is left to verify().
+		assert(left.isEmpty() || left.getKey().get().compareTo(k) < 0);
+		assert(right.isEmpty() || right.getKey().get().compareTo(k) > 0);
 
 		this.key = k;
 		this.value = v;
@@ -357,6 +360,25 @@ public class Fork<Key extends Comparable<Key>,Value> implements Bst<Key,Value> {
 		return arrayToBst(a, 0, a.length-1);
 	}
 
+	@Override
+	/**
+	 * Checks that the whole tree has the binary search property by saving it
+	 * in order and making sure the keys are strictly increasing.
+	 * @return True or false for whether the tree is a binary search tree.
+	 */
+	public boolean verify() {
+		@SuppressWarnings("unchecked")
+		Entry<Key,Value>[] a = (Entry<Key,Value>[]) Array.newInstance(Entry.class, size());
+
+		saveInOrder(a);
+		for(int i = 1; i < a.length; i++) {
+			if(a[i - 1].getKey().compareTo(a[i].getKey()) >= 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * A recursive procedure that does the work of balancing the binary search tree
 	 * by keeping track of the start and end indices of the array.
@@ -0,0 +1,436 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * The record of one game of Domineering, and a compact binary file format
+ * for many of them.
+ * <p>
+ * A file starts with the four bytes "DGR1" and is followed by records, each
+ * prefixed by its length so a reader can skip it. Every number is an
+ * unsigned LEB128 varint, so a move on a board of up to 127 positions and a
+ * think time under 16ms fit in a byte each:
+ * <pre>
+ *   length columns rows moves (position micros eval)* result
+ * </pre>
+ * position is the top/left position covered (1 to rows*columns, as in
+ * DomineeringBoard2; moves alternate H, V, ... from the empty board), micros
+ * is how long the player thought about the move, eval is 0 if the player
+ * did not say how it rated the position and otherwise the zigzag-encoded
+ * outcome plus 1, and result is the zigzag-encoded value of the game.
+ */
+public final class GameRecord {
+
+	private static final byte[] MAGIC      = "DGR1".getBytes(StandardCharsets.US_ASCII);
+	private static final int    MAX_VARINT = 5; //bytes in the longest int varint
+
+	public static final int NO_EVAL = Integer.MIN_VALUE;
+
+	private final int   columns;
+	private final int   rows;
+	private final int[] moves;  //positions
+	private final int[] micros; //think time of each move
+	private final int[] evals;  //the mover's evaluation before each move, or NO_EVAL
+	private final int   result;
+
+	/**
+	 * @param columns Number of columns.
+	 * @param rows    Number of rows.
+	 * @param moves   The positions of the moves, in order.
+	 * @param micros  How long each move took.
+	 * @param evals   The mover's evaluation before each move, or NO_EVAL.
+	 * @param result  The value of the game.
+	 */
+	public GameRecord(int columns, int rows, int[] moves, int[] micros, int[] evals, int result) {
+		assert (moves.length == micros.length && moves.length == evals.length);
+		this.columns = columns;
+		this.rows = rows;
+		this.moves = moves;
+		this.micros = micros;
+		this.evals = evals;
+		this.result = result;
+	}
+
+	/**
+	 * @return Number of columns.
+	 */
+	public int getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @return Number of rows.
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return Number of moves played.
+	 */
+	public int length() {
+		return moves.length;
+	}
+
+	/**
+	 * @param i A move number, from 0.
+	 * @return The move.
+	 */
+	public DomineeringMove move(int i) {
+		return DomineeringMove.of(moves[i]);
+	}
+
+	/**
+	 * @param i A move number, from 0.
+	 * @return How many microseconds the move took.
+	 */
+	public int micros(int i) {
+		return micros[i];
+	}
+
+	/**
+	 * @param i A move number, from 0.
+	 * @return The mover's evaluation before the move, or NO_EVAL.
+	 */
+	public int eval(int i) {
+		return evals[i];
+	}
+
+	/**
+	 * @return The value of the game (1 if H won, -1 if V won).
+	 */
+	public int getResult() {
+		return result;
+	}
+
+	/**
+	 * Plays the game through, from the empty board to the final position.
+	 * @param visit Called with every board, starting with the empty one.
+	 * @throws IllegalArgumentException If a move cannot be played.
+	 */
+	public void replay(Consumer<DomineeringBoard2> visit) {
+		Board2<DomineeringMove> board = new DomineeringBoard2(columns, rows);
+		visit.accept((DomineeringBoard2) board);
+		for(int m : moves) {
+			DomineeringMove d = DomineeringMove.of(m);
+			if(!board.availableMoves().contains(d)) {
+				throw new IllegalArgumentException("Corrupt game record: cannot play " + m + " on\n" + board);
+			}
+			board = board.play(d);
+			visit.accept((DomineeringBoard2) board);
+		}
+	}
+
+	/**
+	 * Writes this record, with its length.
+	 * @param out Where to write it. Must have room for encodedSize() bytes.
+	 */
+	public void writeTo(ByteBuffer out) {
+		putVarint(out, bodySize());
+		putVarint(out, columns);
+		putVarint(out, rows);
+		putVarint(out, moves.length);
+		for(int i = 0; i < moves.length; i++) {
+			putVarint(out, moves[i]);
+			putVarint(out, micros[i]);
+			putVarint(out, (evals[i] == NO_EVAL ? 0 : zigzag(evals[i]) + 1));
+		}
+		putVarint(out, zigzag(result));
+	}
+
+	/**
+	 * @return The number of bytes writeTo() writes.
+	 */
+	public int encodedSize() {
+		int body = bodySize();
+		return varintSize(body) + body;
+	}
+
+	/**
+	 * @return The number of bytes in the record after its length.
+	 */
+	private int bodySize() {
+		int size = varintSize(columns) + varintSize(rows) + varintSize(moves.length) + varintSize(zigzag(result));
+		for(int i = 0; i < moves.length; i++) {
+			size += varintSize(moves[i]) + varintSize(micros[i])
+					+ varintSize(evals[i] == NO_EVAL ? 0 : zigzag(evals[i]) + 1);
+		}
+		return size;
+	}
+
+	/**
+	 * Reads a record written by writeTo().
+	 * @param in Where to read it from, positioned at its length.
+	 * @return The record.
+	 * @throws IllegalArgumentException If the bytes are not a record.
+	 */
+	public static GameRecord readFrom(ByteBuffer in) {
+		try {
+			int length = getVarint(in);
+			int end    = in.position() + length;
+			int columns = getVarint(in);
+			int rows    = getVarint(in);
+			int n       = getVarint(in);
+			if(n > length) {
+				throw new IllegalArgumentException("Corrupt game record: " + n + " moves in " + length + " bytes");
+			}
+			if(columns < 0 || rows < 0 || (long) columns * rows > PackedMove.MAX_POSITION) {
+				throw new IllegalArgumentException("Corrupt game record: a " + columns + "x" + rows + " board");
+			}
+			int[] moves  = new int[n];
+			int[] micros = new int[n];
+			int[] evals  = new int[n];
+			for(int i = 0; i < n; i++) {
+				moves[i] = getVarint(in);
+				if(moves[i] < 1 || moves[i] > columns * rows) {
+					throw new IllegalArgumentException("Corrupt game record: position " + moves[i] + " is off the board");
+				}
+				micros[i] = getVarint(in);
+				int eval = getVarint(in);
+				evals[i] = (eval == 0 ? NO_EVAL : unzigzag(eval - 1));
+			}
+			int result = unzigzag(getVarint(in));
+			if(in.position() != end) {
+				throw new IllegalArgumentException("Corrupt game record: wrong length");
+			}
+			return new GameRecord(columns, rows, moves, micros, evals, result);
+		}
+		catch(BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated game record");
+		}
+	}
+
+	/**
+	 * Appends records to a file. Games on any number of threads can share a
+	 * writer; each record is written in one piece.
+	 */
+	public static final class Writer implements Closeable {
+		private final FileChannel file;
+		private ByteBuffer        buffer = ByteBuffer.allocate(4096);
+
+		/**
+		 * Opens a file for appending, creating it if need be. The file is
+		 * locked while its header is written, so processes opening a new file
+		 * at the same time write only one header between them.
+		 * @param path The file.
+		 * @throws IOException If it cannot be opened.
+		 */
+		public Writer(Path path) throws IOException {
+			file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.APPEND);
+			try {
+				FileLock lock = file.lock();
+				try {
+					if(file.size() == 0) {
+						file.write(ByteBuffer.wrap(MAGIC));
+					}
+				}
+				finally {
+					lock.release();
+				}
+			}
+			catch(IOException e) {
+				file.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Appends a record.
+		 * @param record The record.
+		 */
+		public synchronized void write(GameRecord record) {
+			int size = record.encodedSize();
+			if(buffer.capacity() < size) {
+				buffer = ByteBuffer.allocate(Math.max(size, 2 * buffer.capacity()));
+			}
+			buffer.clear();
+			record.writeTo(buffer);
+			buffer.flip();
+			try {
+				while(buffer.hasRemaining()) {
+					file.write(buffer);
+				}
+			}
+			catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			file.close();
+		}
+	}
+
+	/**
+	 * Reads the records in a file through a memory map, in windows so that
+	 * files bigger than 2GB can be read.
+	 */
+	public static final class Reader implements Closeable, Iterator<GameRecord> {
+		private static final long WINDOW = 1L << 30;
+
+		private final FileChannel file;
+		private final long        size;
+		private long              base; //file offset of the start of the window
+		private MappedByteBuffer  window;
+
+		/**
+		 * @param path The file.
+		 * @throws IOException If it cannot be read or is not a file of game records.
+		 */
+		public Reader(Path path) throws IOException {
+			file = FileChannel.open(path, StandardOpenOption.READ);
+			size = file.size();
+			map(0);
+			byte[] magic = new byte[MAGIC.length];
+			if(size >= MAGIC.length) {
+				window.get(magic);
+			}
+			if(!Arrays.equals(magic, MAGIC)) {
+				file.close();
+				throw new IOException(path + " is not a file of game records");
+			}
+		}
+
+		/**
+		 * Maps the window starting at an offset.
+		 * @param offset The file offset.
+		 */
+		private void map(long offset) throws IOException {
+			base = offset;
+			window = file.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW, size - offset));
+		}
+
+		@Override
+		public boolean hasNext() {
+			return base + window.position() < size;
+		}
+
+		@Override
+		public GameRecord next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			try {
+				if(window.remaining() < MAX_VARINT || window.remaining() < peekLength()) {
+					map(base + window.position()); //the record crosses the end of the window
+				}
+				return readFrom(window);
+			}
+			catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * @return The size of the record at the current position, with its length.
+		 */
+		private int peekLength() {
+			int start  = window.position();
+			int length = getVarint(window);
+			length += window.position() - start;
+			window.position(start);
+			return length;
+		}
+
+		@Override
+		public void close() throws IOException {
+			file.close();
+		}
+	}
+
+	/**
+	 * Writes an unsigned varint.
+	 * @param out Where to write it.
+	 * @param n   A non-negative int.
+	 */
+	private static void putVarint(ByteBuffer out, int n) {
+		while((n & ~0x7F) != 0) {
+			out.put((byte) ((n & 0x7F) | 0x80));
+			n >>>= 7;
+		}
+		out.put((byte) n);
+	}
+
+	/**
+	 * Reads an unsigned varint.
+	 * @param in Where to read it from.
+	 * @return The int.
+	 */
+	private static int getVarint(ByteBuffer in) {
+		int n     = 0;
+		int shift = 0;
+		byte b;
+		do {
+			if(shift >= 7 * MAX_VARINT) {
+				throw new IllegalArgumentException("Corrupt game record: varint too long");
+			}
+			b = in.get();
+			n |= (b & 0x7F) << shift;
+			shift += 7;
+		} while(b < 0);
+		return n;
+	}
+
+	/**
+	 * @param n A non-negative int.
+	 * @return The number of bytes putVarint() writes for it.
+	 */
+	private static int varintSize(int n) {
+		return (n & ~0x7F) == 0 ? 1 : (n & ~0x3FFF) == 0 ? 2 : (n & ~0x1FFFFF) == 0 ? 3 : (n & ~0xFFFFFFF) == 0 ? 4 : 5;
+	}
+
+	/**
+	 * @param n Any int.
+	 * @return n mapped to a non-negative int, small when n is near 0.
+	 */
+	private static int zigzag(int n) {
+		return (n << 1) ^ (n >> 31);
+	}
+
+	/**
+	 * @param n The result of zigzag().
+	 * @return The int it came from.
+	 */
+	private static int unzigzag(int n) {
+		return (n >>> 1) ^ -(n & 1);
+	}
+
+	/**
+	 * Replays every game in a file and prints how many games and positions
+	 * there were and how fast they were replayed.
+	 * Usage: java GameRecord &lt;file&gt;
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length != 1) {
+			System.err.println("Usage: java GameRecord <file>");
+			System.exit(1);
+		}
+		long   games     = 0;
+		long[] positions = new long[1];
+		long   start     = System.nanoTime();
+		try(Reader reader = new Reader(Paths.get(args[0]))) {
+			while(reader.hasNext()) {
+				reader.next().replay(board -> positions[0]++);
+				games++;
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d games, %d positions in %.3fs (%.0f positions/s)%n", games, positions[0], seconds,
+				positions[0] / Math.max(seconds, 1e-9));
+	}
+}
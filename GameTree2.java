@@ -1,4 +1,5 @@
 import java.util.Collection;
+import java.util.Optional;
 
 // Game trees for abstract games two-person games with outcomes in the
 // type of integers, parameterised by a type of moves.
@@ -30,6 +31,8 @@ public class GameTree2<Move extends Comparable<Move>> {
 			int optimalOutcome) {
 
 		assert (Board2 != null && children != null);
+		//the children are finished, so check their whole tree once rather than on every put
+		assert (!(children instanceof BstTable) || ((BstTable<Move, GameTree2<Move>>) children).verify());
 		this.board2 = Board2;
 		this.children = children;
 		this.optimalOutcome = optimalOutcome;
@@ -99,7 +102,22 @@ public class GameTree2<Move extends Comparable<Move>> {
 	}
 
 	/**
-	 * Plays first using this tree.
+	 * Finds the first child (in key order) that reaches the optimal outcome,
+	 * which is the move the player to move will make.
+	 * @return The optimal move and its subtree (empty for a leaf).
+	 */
+	public Optional<Entry<Move, GameTree2<Move>>> optimalEntry() {
+		Collection<Move> moves = children.keys();
+		for (Move child : moves) {
+			if (optimalOutcome == children.get(child).get().optimalOutcome) {
+				return Optional.of(new Entry<Move, GameTree2<Move>>(child, children.get(child).get()));
+			}
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Plays first using this tree, searching on the calling thread.
 	 * @param c A move channel to send moves between.
 	 * @param level The current depth.
 	 * @param alpha The lower bound.
@@ -108,6 +126,38 @@ public class GameTree2<Move extends Comparable<Move>> {
 	 */
 	public void firstPlayer(MoveChannel<Move> c, int level, int alpha, int beta,
 			boolean heuristic) {
+		firstPlayer(c, level, alpha, beta, heuristic, Engine.INLINE);
+	}
+
+	/**
+	 * Plays second using this tree, searching on the calling thread.
+	 * @param c A move channel to send moves between.
+	 * @param level The current depth.
+	 * @param alpha The lower bound.
+	 * @param beta The upper bound.
+	 * @param heuristic A boolean for whether the game player is using the heuristic version.
+	 */
+	public void secondPlayer(MoveChannel<Move> c, int level, int alpha, int beta,
+			boolean heuristic) {
+		secondPlayer(c, level, alpha, beta, heuristic, Engine.INLINE);
+	}
+
+	/**
+	 * Plays first using this tree.
+	 * @param c A move channel to send moves between.
+	 * @param level The current depth.
+	 * @param alpha The lower bound.
+	 * @param beta The upper bound.
+	 * @param heuristic A boolean for whether the game player is using the heuristic version.
+	 * @param engine Where to build any further trees.
+	 */
+	public void firstPlayer(MoveChannel<Move> c, int level, int alpha, int beta,
+			boolean heuristic, Engine engine) {
+		if(!heuristic && isLeaf() && !board2.availableMoves().isEmpty()) {
+			//the end of the nodes an exact search built (see Board2.treePlies) - build the next ones
+			engine.tree(board2, level, alpha, beta, heuristic).firstPlayer(c, level, alpha, beta, heuristic, engine);
+			return;
+		}
 		if(heuristic) {
 			c.comment(board2 + "\nThe heuristic outcome is " + optimalOutcome);
 		}
@@ -117,25 +167,29 @@ public class GameTree2<Move extends Comparable<Move>> {
 
 		if(isLeaf()) {
 			if(board2.availableMoves().isEmpty()) {
-				assert (optimalOutcome == board2.value());
+				assert (Integer.signum(optimalOutcome) == board2.value()); //heuristic wins may be scaled up
 				c.end(board2.value());
 			}
 			else if(heuristic) {
-				board2.tree(level, alpha, beta, heuristic).firstPlayer(c, level, alpha, beta, heuristic);
+				engine.tree(board2, level, alpha, beta, heuristic).firstPlayer(c, level, alpha, beta, heuristic, engine);
 			}
 		}
 		else {
-			Entry<Move, GameTree2<Move>> optimalEntry = null;
-			Collection<Move> moves = children.keys();
-			for (Move child : moves) {
-				if (optimalOutcome == children.get(child).get().optimalOutcome) {
-					optimalEntry = new Entry<Move, GameTree2<Move>>(child, children.get(child).get());
-					break;
-				}
-			}
+			MoveEvent event = new MoveEvent();
+			event.begin();
+			Entry<Move, GameTree2<Move>> optimalEntry = optimalEntry().orElse(null);
 			assert (optimalEntry != null);
+			event.end();
+			if(event.shouldCommit()) {
+				event.move = String.valueOf(optimalEntry.getKey());
+				event.outcome = optimalOutcome;
+				event.candidates = children.size();
+				event.heuristic = heuristic;
+				event.commit();
+			}
+			c.evaluation(optimalOutcome);
 			c.giveMove(optimalEntry.getKey());
-			optimalEntry.getValue().secondPlayer(c, level, alpha, beta, heuristic);
+			optimalEntry.getValue().secondPlayer(c, level, alpha, beta, heuristic, engine);
 		}
 	}
 
@@ -146,9 +200,15 @@ public class GameTree2<Move extends Comparable<Move>> {
 	 * @param alpha The lower bound.
 	 * @param beta The upper bound.
 	 * @param heuristic A boolean for whether the game player is using the heuristic version.
+	 * @param engine Where to build any further trees.
 	 */
 	public void secondPlayer(MoveChannel<Move> c, int level, int alpha, int beta,
-			boolean heuristic) {
+			boolean heuristic, Engine engine) {
+		if(!heuristic && isLeaf() && !board2.availableMoves().isEmpty()) {
+			//the end of the nodes an exact search built (see Board2.treePlies) - build the next ones
+			engine.tree(board2, level, alpha, beta, heuristic).secondPlayer(c, level, alpha, beta, heuristic, engine);
+			return;
+		}
 		if(heuristic) {
 			c.comment(board2 + "\nThe heuristic outcome is " + optimalOutcome);
 		}
@@ -158,20 +218,22 @@ public class GameTree2<Move extends Comparable<Move>> {
 
 		if(isLeaf()) {
 			if(board2.availableMoves().isEmpty()) {
-				assert (optimalOutcome == board2.value());
+				assert (Integer.signum(optimalOutcome) == board2.value()); //heuristic wins may be scaled up
 				c.end(board2.value());
 			}
 			else if(heuristic) {
-				board2.tree(level, alpha, beta, heuristic).secondPlayer(c, level, alpha, beta, heuristic);
+				engine.tree(board2, level, alpha, beta, heuristic).secondPlayer(c, level, alpha, beta, heuristic, engine);
 			}
 		}
 		else {
+			engine.ponder(this, level, alpha, beta, heuristic); //use the opponent's time
 			Move m = c.getMove();
+			engine.stopPondering(board2, m);
 			if(children.containsKey(m)) {
-				children.get(m).get().firstPlayer(c, level, alpha, beta, heuristic);
+				children.get(m).get().firstPlayer(c, level, alpha, beta, heuristic, engine);
 			}
 			else {
-				board2.newTree(m, level, alpha, beta, heuristic).firstPlayer(c, level, alpha, beta, heuristic);
+				engine.newTree(board2, m, level, alpha, beta, heuristic).firstPlayer(c, level, alpha, beta, heuristic, engine);
 			}
 		}
 	}
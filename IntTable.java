@@ -0,0 +1,163 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * An implementation of tables specialised to DomineeringMove keys. The
+ * positions are held in a sorted int array alongside an array of values,
+ * so lookups are a binary search over primitives rather than a walk
+ * through a tree of boxed keys.
+ * <p>
+ * Like BstTable, this table is immutable: put and remove return a copy.
+ *
+ * @param <Value> The type of values stored in the table.
+ */
+public class IntTable<Value> implements Table<DomineeringMove, Value> {
+
+	private static final int[]    NO_KEYS   = new int[0];
+	private static final Object[] NO_VALUES = new Object[0];
+
+	private final int[]    keys;   //positions in ascending order
+	private final Object[] values; //values[i] belongs to keys[i]
+
+	public IntTable() {
+		keys = NO_KEYS;
+		values = NO_VALUES;
+	}
+
+	/**
+	 * @param keys   Positions in ascending order.
+	 * @param values The value for each position.
+	 */
+	private IntTable(int[] keys, Object[] values) {
+		assert (keys.length == values.length);
+		this.keys = keys;
+		this.values = values;
+	}
+
+	@Override
+	/**
+	 * Checks to see if the table contains a key.
+	 * @param k The key to check.
+	 * @return A boolean for whether that key exists.
+	 */
+	public boolean containsKey(DomineeringMove k) {
+		return Arrays.binarySearch(keys, k.getMove()) >= 0;
+	}
+
+	@Override
+	/**
+	 * Gets the value for a key, if it exists.
+	 * @param k The key to try and find.
+	 * @return The value as an option type (empty option if it doesn't exist).
+	 */
+	public Optional<Value> get(DomineeringMove k) {
+		int i = Arrays.binarySearch(keys, k.getMove());
+		return (i >= 0 ? Optional.ofNullable(value(i)) : Optional.empty());
+	}
+
+	@Override
+	/**
+	 * Checks to see if the table is empty.
+	 * @return A boolean for whether the table is empty or not.
+	 */
+	public boolean isEmpty() {
+		return keys.length == 0;
+	}
+
+	@Override
+	/**
+	 * Inserts a key and value into the table.
+	 * @param k The key to insert.
+	 * @param v The value to insert.
+	 * @return A new table with the key and value inserted.
+	 */
+	public Table<DomineeringMove, Value> put(DomineeringMove k, Value v) {
+		int i = Arrays.binarySearch(keys, k.getMove());
+		if(i >= 0) { //key already there - only the value changes
+			Object[] newValues = values.clone();
+			newValues[i] = v;
+			return new IntTable<Value>(keys, newValues);
+		}
+
+		int      insert    = -(i + 1);
+		int[]    newKeys   = new int[keys.length + 1];
+		Object[] newValues = new Object[keys.length + 1];
+		System.arraycopy(keys, 0, newKeys, 0, insert);
+		System.arraycopy(values, 0, newValues, 0, insert);
+		newKeys[insert] = k.getMove();
+		newValues[insert] = v;
+		System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+		System.arraycopy(values, insert, newValues, insert + 1, keys.length - insert);
+		return new IntTable<Value>(newKeys, newValues);
+	}
+
+	@Override
+	/**
+	 * Removes a key and its corresponding value from the table.
+	 * @param k The key to remove.
+	 * @return A new table with the key removed (the same table if the key is absent).
+	 */
+	public Optional<Table<DomineeringMove, Value>> remove(DomineeringMove k) {
+		int i = Arrays.binarySearch(keys, k.getMove());
+		if(i < 0) {
+			return Optional.of(this);
+		}
+
+		int[]    newKeys   = new int[keys.length - 1];
+		Object[] newValues = new Object[keys.length - 1];
+		System.arraycopy(keys, 0, newKeys, 0, i);
+		System.arraycopy(values, 0, newValues, 0, i);
+		System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+		System.arraycopy(values, i + 1, newValues, i, keys.length - i - 1);
+		return Optional.of(new IntTable<Value>(newKeys, newValues));
+	}
+
+	@Override
+	/**
+	 * The size of the table.
+	 * @return The size of the table as an int.
+	 */
+	public int size() {
+		return keys.length;
+	}
+
+	@Override
+	/**
+	 * A collection of values held in the table, in the same order as keys().
+	 * @return An ArrayList which stores all of the values in the table.
+	 */
+	public Collection<Value> values() {
+		Collection<Value> result = new ArrayList<Value>(keys.length);
+		for(int i = keys.length - 1; i >= 0; i--) {
+			result.add(value(i));
+		}
+		return result;
+	}
+
+	@Override
+	/**
+	 * A collection of keys held in the table. DomineeringMove orders larger
+	 * positions first, so the positions are given in descending order
+	 * (the same order as a BstTable).
+	 * @return An ArrayList which stores all of the keys in the table.
+	 */
+	public Collection<DomineeringMove> keys() {
+		Collection<DomineeringMove> result = new ArrayList<DomineeringMove>(keys.length);
+		for(int i = keys.length - 1; i >= 0; i--) {
+			result.add(DomineeringMove.of(keys[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the value stored at index i.
+	 * @param i An index into the arrays.
+	 * @return The value at that index.
+	 */
+	@SuppressWarnings("unchecked")
+	private Value value(int i) {
+		return (Value) values[i];
+	}
+}
@@ -0,0 +1,184 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts many games of Domineering in one JVM, so that a tournament does not
+ * pay for JVM startup on every game.
+ * <p>
+ * Each game runs on its own thread, which spends almost all of its time
+ * blocked in MoveChannel.getMove(). Those are virtual threads when the JVM
+ * has them (Java 21 and up) and cached platform threads otherwise. The
+ * searches themselves are CPU bound, so every game shares one Engine with a
+ * bounded pool of platform threads.
+ */
+public class MatchServer {
+
+	private final ExecutorService   games;   //one thread per game
+	private final Engine            engine;  //shared by every game
+	private final GameRecord.Writer records; //null means games are not recorded
+
+	/**
+	 * @param searchThreads The number of searches that may run at once.
+	 */
+	public MatchServer(int searchThreads) {
+		this(searchThreads, null);
+	}
+
+	/**
+	 * @param searchThreads The number of searches that may run at once.
+	 * @param records       Where to record every game, or null not to.
+	 */
+	public MatchServer(int searchThreads, GameRecord.Writer records) {
+		this.games = gameThreads();
+		this.engine = Engine.bounded(searchThreads);
+		this.records = records;
+	}
+
+	/**
+	 * Starts a game against an opponent on the other end of a channel.
+	 * @param c        The channel to the opponent.
+	 * @param columns  Number of columns on the board.
+	 * @param rows     Number of rows on the board.
+	 * @param cpuFirst Whether the computer goes first (and so plays horizontal).
+	 * @return The running game.
+	 */
+	public Future<?> play(MoveChannel<DomineeringMove> c, int columns, int rows, boolean cpuFirst) {
+		MoveChannel<DomineeringMove> game = (records == null ? c : new RecordingMoveChannel(c, columns, rows, records));
+		return games.submit(() -> BlackBoxDomineering2.play(game, columns, rows, cpuFirst, engine));
+	}
+
+	/**
+	 * Starts a game against an opponent in the same JVM.
+	 * @param columns  Number of columns on the board.
+	 * @param rows     Number of rows on the board.
+	 * @param cpuFirst Whether the computer goes first (and so plays horizontal).
+	 * @return The opponent's end of the game's channel.
+	 */
+	public QueueMoveChannel<DomineeringMove> play(int columns, int rows, boolean cpuFirst) {
+		QueueMoveChannel<DomineeringMove> c = new QueueMoveChannel<DomineeringMove>();
+		play(c, columns, rows, cpuFirst);
+		return c.peer();
+	}
+
+	/**
+	 * Accepts games from referees over TCP until the server is shut down. Each
+	 * connection is one game, opened by a line with the same four words as the
+	 * arguments of BlackBoxDomineering2 (see SocketMoveChannel).
+	 * @param address  The address to listen on.
+	 * @param comments Whether to send comments (the board after every move) to referees.
+	 * @throws IOException If the address cannot be bound.
+	 */
+	public void listen(InetSocketAddress address, boolean comments) throws IOException {
+		try(ServerSocketChannel server = ServerSocketChannel.open()) {
+			server.bind(address);
+			while(!games.isShutdown()) {
+				SocketChannel socket = server.accept();
+				socket.socket().setTcpNoDelay(true); //moves are tiny - send them at once
+				games.submit(() -> play(new SocketMoveChannel(socket, comments)));
+			}
+		}
+	}
+
+	/**
+	 * Plays one game over a socket, on the game's own thread.
+	 * @param c The channel to the referee.
+	 */
+	private void play(SocketMoveChannel c) {
+		try {
+			String[] args = c.readHeader();
+			if(args.length != 4 || !(args[0].equals("first") || args[0].equals("second"))) {
+				throw new IllegalArgumentException("Bad opening line from referee: " + String.join(" ", args));
+			}
+			boolean cpuFirst = args[0].equals("first");
+			int     columns  = Integer.parseInt(args[2]); //a NumberFormatException is an IllegalArgumentException
+			int     rows     = Integer.parseInt(args[3]);
+			if(columns <= 0 || rows <= 0 || (long) columns * rows > PackedMove.MAX_POSITION) {
+				throw new IllegalArgumentException("Cannot play on a " + columns + "x" + rows + " board");
+			}
+			c.setBoard(columns, rows, cpuFirst);
+			BlackBoxDomineering2.play((records == null ? c : new RecordingMoveChannel(c, columns, rows, records)),
+					columns, rows, cpuFirst, engine);
+		}
+		catch(RuntimeException e) { //a bad referee only loses its own game
+			System.err.println("Game abandoned: " + e);
+		}
+		finally {
+			c.close();
+		}
+	}
+
+	/**
+	 * Stops accepting games and lets the running ones finish.
+	 */
+	public void shutdown() {
+		games.shutdown();
+		engine.shutdown();
+	}
+
+	/**
+	 * Runs a server for referees to connect to.
+	 * Usage: java MatchServer &lt;port&gt; [search threads] [comments]
+	 */
+	public static void main(String[] args) {
+		int     port     = 0;
+		int     threads  = Runtime.getRuntime().availableProcessors();
+		boolean comments = false;
+		try {
+			port = Integer.parseInt(args[0]);
+			if(args.length > 1) {
+				threads = Integer.parseInt(args[1]);
+			}
+			comments = args.length > 2 && args[2].equals("comments");
+		}
+		catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			System.err.println("Usage: java MatchServer <port> [search threads] [comments]");
+			System.exit(1);
+		}
+
+		SearchStats.registerMBean(); //so that a running server can be profiled with e.g. jconsole
+		String record = System.getProperty("domineering.record");
+		try {
+			TranspositionTable table = TranspositionTable.configured(); //shared by every game's exact searches
+			if(table != null) {
+				table.install();
+			}
+			SolvedCache cache = SolvedCache.configured(); //shared with other processes on this host
+			if(cache != null) {
+				cache.install();
+			}
+			GameRecord.Writer records = (record == null ? null : new GameRecord.Writer(Paths.get(record)));
+			new MatchServer(threads, records).listen(new InetSocketAddress(port), comments);
+		}
+		catch(IOException | NumberFormatException e) {
+			System.err.println("Could not start the server on port " + port + ": " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * An executor with a new virtual thread per game if this JVM has them, and
+	 * a cached pool of daemon platform threads if not. Looked up reflectively
+	 * so that the code still compiles and runs on Java 17.
+	 * @return An executor to run games on.
+	 */
+	private static ExecutorService gameThreads() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch(ReflectiveOperationException e) {
+			AtomicInteger count = new AtomicInteger();
+			return Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(r, "game-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+}
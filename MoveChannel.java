@@ -10,4 +10,13 @@ interface MoveChannel<Move> {
 	public void giveMove(Move move);
 	public void end(int Value);
 	public void comment(String msg);
+
+	/**
+	 * How the computer rates the position it is about to move from. Only
+	 * channels that record games need it.
+	 * @param value The outcome it expects.
+	 */
+	public default void evaluation(int value) {
+		//Do nothing by default
+	}
 }
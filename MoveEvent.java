@@ -0,0 +1,28 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for each move the engine decides on in the
+ * play loop of GameTree2.
+ */
+@Name("domineering.Move")
+@Label("Move Decision")
+@Category("Domineering")
+@Description("A move chosen from the game tree")
+class MoveEvent extends jdk.jfr.Event {
+
+	@Label("Move")
+	String move;
+
+	@Label("Outcome")
+	int outcome;
+
+	@Label("Candidates")
+	@Description("The number of moves in the game tree at this point")
+	int candidates;
+
+	@Label("Heuristic")
+	boolean heuristic;
+}
@@ -0,0 +1,466 @@
+import java.util.concurrent.CancellationException;
+
+/**
+ * A Domineering board which is changed in place, for the inner loop of a
+ * search. makeMove() and unmakeMove() set and clear two bits, and the moves
+ * at each ply are listed into an int[] kept from one search to the next, so
+ * searching a position allocates nothing per node.
+ * <p>
+ * Boards are laid out as in DomineeringBoard2, except that the search only
+ * needs to know which positions are covered, not by whom. One board is kept
+ * per search thread (see DomineeringBoard2.outcome()); it is not thread safe
+ * and nothing outside a search should hold on to it.
+ * <p>
+ * The board keeps a hash of the positions covered, which is all a position
+ * in the search depends on: the number covered says whose turn it is. If a
+ * TranspositionTable is installed, search() stores every position it solves
+ * there and looks positions up before searching them.
+ */
+final class MutableDomineeringBoard {
+
+	static final int MAX_SWING = 3; //the most a move can change the difference in moves: it takes 4, loses itself
+	static final int SWINGS    = 7; //swings run from -3 to 3
+
+	private int                  columns;
+	private int                  rows;
+	private int                  words;    //longs per row
+	private long                 lastWord; //mask of the columns in the last word of a row
+	private long[]               cells = new long[0]; //covered positions, row by row
+	private long[]               keys  = new long[0]; //the hash key of each position, by position
+	private long                 hash;     //the board size's key XORed with the covered positions' keys
+	private TranspositionTable   table;    //search(): where solved positions are kept, or null
+	private int                  plies;    //number of moves played
+	private int[][]              moves = new int[0][]; //the move list of each ply below the root
+	private int                  depth;    //plies below the root
+	private SearchStats.Counters stats;
+	private boolean              graded;   //quiescence(): whether values are move differences
+	private int                  win;      //quiescence(): the value of a win
+	private int                  budget;   //quiescence(): nodes left to search
+
+	/**
+	 * Sets the board to a position.
+	 * @param columns Number of columns.
+	 * @param rows    Number of rows.
+	 * @param hCells  Positions H covers, laid out as in DomineeringBoard2.
+	 * @param vCells  Positions V covers.
+	 * @param plies   Number of moves played.
+	 */
+	void set(int columns, int rows, long[] hCells, long[] vCells, int plies) {
+		if(columns != this.columns || rows != this.rows) {
+			this.columns = columns;
+			this.rows = rows;
+			this.words = (columns + 63) / 64;
+			this.lastWord = (columns % 64 == 0 ? -1L : (1L << (columns % 64)) - 1);
+			this.cells = new long[hCells.length];
+			this.moves = new int[0][];
+			this.keys = new long[rows * columns + 1];
+			for(int p = 1; p < keys.length; p++) {
+				keys[p] = DomineeringBoard2.zobrist(DomineeringBoard2.H, p) ^ DomineeringBoard2.zobrist(DomineeringBoard2.V, p);
+			}
+		}
+		this.hash = DomineeringBoard2.mix(((long) columns << 32) | rows);
+		for(int i = 0; i < cells.length; i++) {
+			cells[i] = hCells[i] | vCells[i];
+			for(long bits = cells[i]; bits != 0; bits &= bits - 1) {
+				hash ^= keys[(i / words) * columns + (i % words) * 64 + Long.numberOfTrailingZeros(bits) + 1];
+			}
+		}
+		this.plies = plies;
+		this.depth = 0;
+	}
+
+	/**
+	 * A hash of the position which is the same for the board mirrored left to
+	 * right, top to bottom or both - the ways of turning it over which keep
+	 * H's moves horizontal - as those positions have the same value.
+	 * @return The least of the four boards' hashes.
+	 */
+	long canonicalHash() {
+		long size      = DomineeringBoard2.mix(((long) columns << 32) | rows);
+		long leftRight = size;
+		long topBottom = size;
+		long both      = size;
+		for(int i = 0; i < cells.length; i++) {
+			int r = i / words;
+			for(long bits = cells[i]; bits != 0; bits &= bits - 1) {
+				int c = (i % words) * 64 + Long.numberOfTrailingZeros(bits);
+				leftRight ^= keys[r * columns + (columns - 1 - c) + 1];
+				topBottom ^= keys[(rows - 1 - r) * columns + c + 1];
+				both ^= keys[(rows - 1 - r) * columns + (columns - 1 - c) + 1];
+			}
+		}
+		return Math.min(Math.min(hash, leftRight), Math.min(topBottom, both));
+	}
+
+	/**
+	 * @return The next player to play.
+	 */
+	Player nextPlayer() {
+		return plies % 2 == 0 ? DomineeringBoard2.H : DomineeringBoard2.V;
+	}
+
+	/**
+	 * Plays a move for the next player.
+	 * @param position The top/left position the domino covers.
+	 */
+	void makeMove(int position) {
+		flip(position);
+		flip(position + (nextPlayer() == DomineeringBoard2.H ? 1 : columns));
+		plies++;
+	}
+
+	/**
+	 * Takes back the last move.
+	 * @param position The position the last move was played at.
+	 */
+	void unmakeMove(int position) {
+		plies--;
+		flip(position);
+		flip(position + (nextPlayer() == DomineeringBoard2.H ? 1 : columns));
+	}
+
+	/**
+	 * Lists the next player's moves.
+	 * @param into Where to put their positions, in increasing order. Must have
+	 *             room for rows*columns moves.
+	 * @return The number of moves.
+	 */
+	int moves(int[] into) {
+		Player player = nextPlayer();
+		int    n      = 0;
+		for(int r = 0; r < rows; r++) {
+			for(int w = 0; w < words; w++) {
+				for(long bits = anchors(player, r, w); bits != 0; bits &= bits - 1) {
+					into[n++] = r * columns + w * 64 + Long.numberOfTrailingZeros(bits) + 1;
+				}
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * The value of the game when the next player has no moves: they lose.
+	 * @return 1 if H wins, -1 if V wins.
+	 */
+	int value() {
+		return nextPlayer() == DomineeringBoard2.H ? -1 : 1;
+	}
+
+	/**
+	 * The optimal outcome of an exact search, exploring moves in the same
+	 * order and cutting off in the same places as Board2.tree, so the outcome
+	 * and the nodes counted in SearchStats are the same. With a
+	 * TranspositionTable installed, positions found there are not searched
+	 * again, and the best move found before is tried first.
+	 * @param level The current depth.
+	 * @param alpha The lower bound.
+	 * @param beta  The upper bound.
+	 * @return The optimal outcome.
+	 */
+	int search(int level, int alpha, int beta) {
+		stats = SearchStats.local();
+		table = TranspositionTable.installed();
+		return node(level, alpha, beta);
+	}
+
+	/**
+	 * One node of search().
+	 * @param level The current depth.
+	 * @param alpha The lower bound.
+	 * @param beta  The upper bound.
+	 * @return The optimal outcome of the node.
+	 */
+	private int node(int level, int alpha, int beta) {
+		stats.enter();
+		try {
+			int best = 0; //the best move found by an earlier search of this position
+			if(table != null) {
+				long entry = table.probe(hash);
+				if(entry == 0) {
+					stats.tableMisses++;
+				}
+				else {
+					stats.tableHits++;
+					int value = TranspositionTable.value(entry);
+					int bound = TranspositionTable.bound(entry);
+					if(TranspositionTable.depth(entry) == TranspositionTable.EXACT_DEPTH
+							&& (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER ? value >= beta : value <= alpha))) {
+						return value;
+					}
+					best = TranspositionTable.move(entry);
+				}
+			}
+			int[] list = list(depth);
+			int   n    = moves(list);
+			if(n == 0) {
+				stats.leaves++;
+				return value();
+			}
+			for(int i = 1; i < n && best != 0; i++) {
+				if(list[i] == best) { //try it first
+					list[i] = list[0];
+					list[0] = best;
+					break;
+				}
+			}
+			boolean max            = (nextPlayer() == DomineeringBoard2.H);
+			int     optimalOutcome = (max ? Integer.MIN_VALUE : Integer.MAX_VALUE);
+			int     optimalMove    = 0;
+			for(int i = 0; i < n; i++) {
+				if(Thread.currentThread().isInterrupted()) {
+					throw new CancellationException("Search cancelled"); //e.g. pondering on the wrong reply
+				}
+				makeMove(list[i]);
+				depth++;
+				int outcome = (max ? node(level - 1, Math.max(alpha, optimalOutcome), beta)
+						: node(level - 1, alpha, Math.min(beta, optimalOutcome)));
+				depth--;
+				unmakeMove(list[i]);
+				if(max ? outcome > optimalOutcome : outcome < optimalOutcome) {
+					optimalOutcome = outcome;
+					optimalMove = list[i];
+				}
+				if(max ? optimalOutcome >= beta : optimalOutcome <= alpha) {
+					stats.cutoff(i);
+					break;
+				}
+			}
+			if(table != null) {
+				int bound = (optimalOutcome >= beta ? TranspositionTable.LOWER
+						: optimalOutcome <= alpha ? TranspositionTable.UPPER : TranspositionTable.EXACT);
+				table.store(hash, optimalOutcome, TranspositionTable.EXACT_DEPTH, bound, optimalMove);
+			}
+			return optimalOutcome;
+		}
+		finally {
+			stats.leave();
+		}
+	}
+
+	/**
+	 * The value of a position at the horizon of a heuristic search. The
+	 * heuristic value is taken unless the player to move has a swing move -
+	 * one which takes at least two more of the opponent's moves than of their
+	 * own, where a move in open space takes four and three - in which case
+	 * those moves are searched too, each player being free to stop and take
+	 * the heuristic value instead. So an exchange which would change the
+	 * heuristic value a lot is played out before the position is judged.
+	 * @param alpha  The lower bound.
+	 * @param beta   The upper bound.
+	 * @param graded Whether values are H's moves less V's rather than 1 or -1.
+	 * @param win    The value of a win.
+	 * @param nodes  The most nodes to search past the horizon.
+	 * @return The value of the position.
+	 */
+	int quiescence(int alpha, int beta, boolean graded, int win, int nodes) {
+		this.stats = SearchStats.local();
+		this.graded = graded;
+		this.win = win;
+		this.budget = nodes;
+		return quiet(alpha, beta);
+	}
+
+	/**
+	 * One node of quiescence().
+	 * @param alpha The lower bound.
+	 * @param beta  The upper bound.
+	 * @return The value of the node.
+	 */
+	private int quiet(int alpha, int beta) {
+		int h = countMoves(DomineeringBoard2.H);
+		int v = countMoves(DomineeringBoard2.V);
+		boolean max = (nextPlayer() == DomineeringBoard2.H);
+		if((max ? h : v) == 0) {
+			return value() * win;
+		}
+		int standPat = (graded ? h - v : h > v ? 1 : -1); //what the player to move can settle for
+		if(budget <= 0 || (max ? standPat >= beta : standPat <= alpha)) {
+			return standPat;
+		}
+		int[] list           = list(depth);
+		int   n              = swings(list);
+		int   optimalOutcome = standPat;
+		for(int i = 0; i < n && budget > 0; i++) {
+			if(Thread.currentThread().isInterrupted()) {
+				throw new CancellationException("Search cancelled"); //e.g. pondering on the wrong reply
+			}
+			budget--;
+			makeMove(list[i]);
+			depth++;
+			stats.enter();
+			int outcome;
+			try {
+				outcome = (max ? quiet(Math.max(alpha, optimalOutcome), beta)
+						: quiet(alpha, Math.min(beta, optimalOutcome)));
+			}
+			finally {
+				stats.leave();
+				depth--;
+				unmakeMove(list[i]);
+			}
+			optimalOutcome = (max ? Math.max(optimalOutcome, outcome) : Math.min(optimalOutcome, outcome));
+			if(max ? optimalOutcome >= beta : optimalOutcome <= alpha) {
+				stats.cutoff(i);
+				break;
+			}
+		}
+		return optimalOutcome;
+	}
+
+	/**
+	 * Lists the next player's swing moves (see quiescence()).
+	 * @param into Where to put their positions, in increasing order. Must have
+	 *             room for rows*columns moves.
+	 * @return The number of moves.
+	 */
+	private int swings(int[] into) {
+		Player player = nextPlayer();
+		int    n      = 0;
+		for(int r = 0; r < rows; r++) {
+			for(int w = 0; w < words; w++) {
+				for(long bits = anchors(player, r, w); bits != 0; bits &= bits - 1) {
+					int c = w * 64 + Long.numberOfTrailingZeros(bits);
+					if(swing(player, r, c) >= 2) {
+						into[n++] = r * columns + c + 1;
+					}
+				}
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * The next player's moves, the ones which take the most of the
+	 * opponent's moves for the fewest of their own first.
+	 * @return Their positions, in that order and otherwise increasing.
+	 */
+	int[] ordered() {
+		Player player = nextPlayer();
+		int[]  moves  = new int[countMoves(player)];
+		int[]  swings = new int[moves.length];
+		int[]  start  = new int[SWINGS + 1]; //where each swing's moves go, from the largest swing
+		int    n      = 0;
+		for(int r = 0; r < rows; r++) {
+			for(int w = 0; w < words; w++) {
+				for(long bits = anchors(player, r, w); bits != 0; bits &= bits - 1) {
+					int c = w * 64 + Long.numberOfTrailingZeros(bits);
+					moves[n] = r * columns + c + 1;
+					swings[n] = MAX_SWING - swing(player, r, c);
+					start[swings[n] + 1]++;
+					n++;
+				}
+			}
+		}
+		for(int i = 1; i <= SWINGS; i++) {
+			start[i] += start[i - 1];
+		}
+		int[] order = new int[n];
+		for(int i = 0; i < n; i++) {
+			order[start[swings[i]]++] = moves[i]; //a counting sort, so it is stable
+		}
+		return order;
+	}
+
+	/**
+	 * How much a move changes the difference in moves in its player's favour:
+	 * the opponent's moves it takes less the player's own, its own included.
+	 * @param player The player.
+	 * @param r      The row of the top/left position, from 0.
+	 * @param c      The column of the top/left position, from 0.
+	 * @return From MAX_SWING - SWINGS + 1 to MAX_SWING; 1 for a move in open space.
+	 */
+	private int swing(Player player, int r, int c) {
+		if(player == DomineeringBoard2.H) {
+			Player other = DomineeringBoard2.V;
+			return anchor(other, r - 1, c) + anchor(other, r - 1, c + 1) + anchor(other, r, c) + anchor(other, r, c + 1)
+					- (anchor(player, r, c - 1) + 1 + anchor(player, r, c + 1));
+		}
+		else {
+			Player other = DomineeringBoard2.H;
+			return anchor(other, r, c - 1) + anchor(other, r, c) + anchor(other, r + 1, c - 1) + anchor(other, r + 1, c)
+					- (anchor(player, r - 1, c) + 1 + anchor(player, r + 1, c));
+		}
+	}
+
+	/**
+	 * The number of moves a player has.
+	 * @param player The player.
+	 * @return The number of moves.
+	 */
+	private int countMoves(Player player) {
+		int count = 0;
+		for(int r = 0; r < rows; r++) {
+			for(int w = 0; w < words; w++) {
+				count += Long.bitCount(anchors(player, r, w));
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Whether a player could place the top/left half of a domino on a square.
+	 * @param player The player.
+	 * @param r      The row, from 0; may be off the board.
+	 * @param c      The column, from 0; may be off the board.
+	 * @return 1 if they could, 0 if not.
+	 */
+	private int anchor(Player player, int r, int c) {
+		if(r < 0 || r >= rows || c < 0 || c >= columns) {
+			return 0;
+		}
+		return (int) (anchors(player, r, c / 64) >>> (c % 64)) & 1;
+	}
+
+	/**
+	 * The move list for a ply, made the first time that ply is reached.
+	 * @param ply Plies below the root.
+	 * @return An array with room for every move.
+	 */
+	private int[] list(int ply) {
+		if(ply == moves.length) {
+			int[][] more = new int[ply + 1][];
+			System.arraycopy(moves, 0, more, 0, ply);
+			more[ply] = new int[rows * columns];
+			moves = more;
+		}
+		return moves[ply];
+	}
+
+	/**
+	 * The positions of one word of a row where a player could place the
+	 * top/left half of a domino.
+	 * @param player The player.
+	 * @param r      The row, from 0.
+	 * @param w      The word of the row, from 0.
+	 * @return A bit for every move anchored in the word.
+	 */
+	private long anchors(Player player, int r, int w) {
+		long free = free(r, w);
+		if(player == DomineeringBoard2.H) {
+			long right = (w + 1 < words ? free(r, w + 1) << 63 : 0); //first column of the next word
+			return free & ((free >>> 1) | right);
+		}
+		else {
+			return (r + 1 < rows ? free & free(r + 1, w) : 0);
+		}
+	}
+
+	/**
+	 * @param r The row, from 0.
+	 * @param w The word of the row, from 0.
+	 * @return The free positions in the word.
+	 */
+	private long free(int r, int w) {
+		return ~cells[r * words + w] & (w == words - 1 ? lastWord : -1L);
+	}
+
+	/**
+	 * Covers a free position or frees a covered one.
+	 * @param position A position.
+	 */
+	private void flip(int position) {
+		int c = (position - 1) % columns;
+		cells[((position - 1) / columns) * words + c / 64] ^= 1L << c;
+		hash ^= keys[position];
+	}
+}
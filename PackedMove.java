@@ -0,0 +1,142 @@
+/**
+ * Static helpers for moves packed into a single int, so that hot paths can
+ * pass a whole domino around as a primitive. A DomineeringMove only holds
+ * the anchor position; a packed move also carries the orientation and the
+ * number of columns, which is enough to recover both covered positions and
+ * the x,y coordinates without knowing the board.
+ * <p>
+ * Layout (least significant bit first):
+ * <pre>
+ *   bits  0-15  anchor position (1 to rows*columns, as in DomineeringBoard2)
+ *   bit   16    orientation (0 is horizontal, 1 is vertical)
+ *   bits 17-30  number of columns
+ * </pre>
+ * 0 is never a valid packed move, so it can be used as "no move".
+ */
+public final class PackedMove {
+
+	public static final int NONE = 0;
+
+	public static final int MAX_POSITION = 0xFFFF;
+	public static final int MAX_COLUMNS  = 0x3FFF;
+
+	private static final int POSITION_MASK  = 0xFFFF;
+	private static final int VERTICAL_BIT   = 1 << 16;
+	private static final int COLUMNS_SHIFT  = 17;
+
+	private PackedMove() {
+		//Do nothing - only static helpers
+	}
+
+	/**
+	 * Packs a move.
+	 * @param anchor   The top/left position covered (1 to rows*columns).
+	 * @param vertical Whether the domino is vertical.
+	 * @param columns  The number of columns on the board.
+	 * @return The packed move.
+	 * @throws IllegalArgumentException If the anchor or columns do not fit.
+	 */
+	public static int pack(int anchor, boolean vertical, int columns) {
+		if(anchor < 1 || anchor > MAX_POSITION || columns < 1 || columns > MAX_COLUMNS) {
+			throw new IllegalArgumentException("Cannot pack position " + anchor + " on a board with " + columns + " columns");
+		}
+		return anchor | (vertical ? VERTICAL_BIT : 0) | (columns << COLUMNS_SHIFT);
+	}
+
+	/**
+	 * Packs a move given by x,y coordinates (0,0 is the top left corner).
+	 * @param x        The column of the anchor.
+	 * @param y        The row of the anchor.
+	 * @param vertical Whether the domino is vertical.
+	 * @param columns  The number of columns on the board.
+	 * @return The packed move.
+	 */
+	public static int fromXY(int x, int y, boolean vertical, int columns) {
+		return pack(x + columns * y + 1, vertical, columns);
+	}
+
+	/**
+	 * Packs a DomineeringMove played by a given player.
+	 * @param move    The move.
+	 * @param player  The player making it (H is horizontal, V is vertical).
+	 * @param columns The number of columns on the board.
+	 * @return The packed move.
+	 */
+	public static int of(DomineeringMove move, Player player, int columns) {
+		return pack(move.getMove(), player == DomineeringBoard2.V, columns);
+	}
+
+	/**
+	 * The top/left position covered by a packed move.
+	 * @param move A packed move.
+	 * @return The anchor position.
+	 */
+	public static int anchor(int move) {
+		return move & POSITION_MASK;
+	}
+
+	/**
+	 * The other position covered by a packed move (right of or below the anchor).
+	 * @param move A packed move.
+	 * @return The second position.
+	 */
+	public static int second(int move) {
+		return anchor(move) + (isVertical(move) ? columns(move) : 1);
+	}
+
+	/**
+	 * @param move A packed move.
+	 * @return Whether the domino is vertical.
+	 */
+	public static boolean isVertical(int move) {
+		return (move & VERTICAL_BIT) != 0;
+	}
+
+	/**
+	 * @param move A packed move.
+	 * @return The player who can make this move.
+	 */
+	public static Player player(int move) {
+		return isVertical(move) ? DomineeringBoard2.V : DomineeringBoard2.H;
+	}
+
+	/**
+	 * @param move A packed move.
+	 * @return The number of columns of the board the move was packed for.
+	 */
+	public static int columns(int move) {
+		return move >>> COLUMNS_SHIFT;
+	}
+
+	/**
+	 * @param move A packed move.
+	 * @return The column of the anchor (0 is the left column).
+	 */
+	public static int x(int move) {
+		return (anchor(move) - 1) % columns(move);
+	}
+
+	/**
+	 * @param move A packed move.
+	 * @return The row of the anchor (0 is the top row).
+	 */
+	public static int y(int move) {
+		return (anchor(move) - 1) / columns(move);
+	}
+
+	/**
+	 * @param move A packed move.
+	 * @return The shared DomineeringMove for the anchor.
+	 */
+	public static DomineeringMove toMove(int move) {
+		return DomineeringMove.of(anchor(move));
+	}
+
+	/**
+	 * @param move A packed move.
+	 * @return The move as "x,y", as typed on the console.
+	 */
+	public static String toString(int move) {
+		return x(move) + "," + y(move);
+	}
+}
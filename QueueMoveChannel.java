@@ -0,0 +1,135 @@
+import java.util.OptionalInt;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * An in-memory move channel. Channels come in connected pairs: a move given
+ * to one end is what getMove() returns at the other, so two players in the
+ * same JVM (or a player and a test driver) can play without any console.
+ *
+ * @param <Move> A move on the board.
+ */
+public class QueueMoveChannel<Move> implements MoveChannel<Move> {
+
+	private final BlockingQueue<Object> in;       //messages from the peer
+	private final BlockingQueue<Object> out;      //messages to the peer
+	private final Consumer<String>      comments; //where comments go
+	private QueueMoveChannel<Move>      peer;
+	private volatile boolean            ended;
+	private volatile int                result;
+
+	/**
+	 * The end of the game, as a message on a queue.
+	 */
+	private static class End {
+		private final int value;
+
+		private End(int value) {
+			this.value = value;
+		}
+	}
+
+	/**
+	 * A new pair of channels with comments thrown away.
+	 */
+	public QueueMoveChannel() {
+		this(msg -> { });
+	}
+
+	/**
+	 * A new pair of channels.
+	 * @param comments Where this end's comments go.
+	 */
+	public QueueMoveChannel(Consumer<String> comments) {
+		this(new LinkedBlockingQueue<Object>(), new LinkedBlockingQueue<Object>(), comments);
+		this.peer = new QueueMoveChannel<Move>(out, in, msg -> { });
+		this.peer.peer = this;
+	}
+
+	/**
+	 * @param in       Messages from the peer.
+	 * @param out      Messages to the peer.
+	 * @param comments Where comments go.
+	 */
+	private QueueMoveChannel(BlockingQueue<Object> in, BlockingQueue<Object> out, Consumer<String> comments) {
+		this.in = in;
+		this.out = out;
+		this.comments = comments;
+	}
+
+	/**
+	 * The other end of this channel.
+	 * @return The connected channel.
+	 */
+	public QueueMoveChannel<Move> peer() {
+		return peer;
+	}
+
+	@Override
+	/**
+	 * Waits for the peer's move.
+	 * @return The move the peer gave.
+	 */
+	@SuppressWarnings("unchecked")
+	public Move getMove() {
+		Object msg;
+		try {
+			msg = in.take();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a move");
+		}
+		if(msg instanceof End) {
+			record(((End) msg).value);
+			throw new IllegalStateException("The game is already over");
+		}
+		return (Move) msg;
+	}
+
+	@Override
+	/**
+	 * Passes a move to the peer.
+	 * @param move The move made.
+	 */
+	public void giveMove(Move move) {
+		out.add(move);
+	}
+
+	@Override
+	/**
+	 * Records the result and tells the peer, in case it is still waiting for a move.
+	 * @param Value The value of the outcome.
+	 */
+	public void end(int Value) {
+		record(Value);
+		out.add(new End(Value));
+	}
+
+	@Override
+	/**
+	 * Passes a comment on to this end's consumer.
+	 * @param msg The message.
+	 */
+	public void comment(String msg) {
+		comments.accept(msg);
+	}
+
+	/**
+	 * The result of the game, once either end has ended it.
+	 * @return The value of the outcome, if the game is over.
+	 */
+	public OptionalInt result() {
+		return (ended ? OptionalInt.of(result) : (peer.ended ? OptionalInt.of(peer.result) : OptionalInt.empty()));
+	}
+
+	/**
+	 * Records the result of the game at this end.
+	 * @param value The value of the outcome.
+	 */
+	private void record(int value) {
+		result = value;
+		ended = true;
+	}
+}
@@ -0,0 +1,86 @@
+import java.util.Arrays;
+
+/**
+ * A move channel which records the game played over it. Every move is
+ * passed straight through and appended to a few int arrays, and the
+ * finished game is handed to a GameRecord.Writer when it ends, so recording
+ * costs next to nothing while the game is being played.
+ */
+public class RecordingMoveChannel implements MoveChannel<DomineeringMove> {
+
+	private final MoveChannel<DomineeringMove> channel;
+	private final GameRecord.Writer            writer;
+	private final int                          columns;
+	private final int                          rows;
+	private int[]                              moves  = new int[16];
+	private int[]                              micros = new int[16];
+	private int[]                              evals  = new int[16];
+	private int                                played;
+	private int                                eval   = GameRecord.NO_EVAL; //the computer's, for its next move
+	private long                               last   = System.nanoTime();  //when the last move was made
+
+	/**
+	 * @param channel The channel to record.
+	 * @param columns Number of columns on the board.
+	 * @param rows    Number of rows on the board.
+	 * @param writer  Where to write the game when it ends.
+	 */
+	public RecordingMoveChannel(MoveChannel<DomineeringMove> channel, int columns, int rows,
+			GameRecord.Writer writer) {
+		this.channel = channel;
+		this.columns = columns;
+		this.rows = rows;
+		this.writer = writer;
+	}
+
+	@Override
+	public DomineeringMove getMove() {
+		DomineeringMove move = channel.getMove();
+		record(move, GameRecord.NO_EVAL);
+		return move;
+	}
+
+	@Override
+	public void giveMove(DomineeringMove move) {
+		record(move, eval);
+		eval = GameRecord.NO_EVAL;
+		channel.giveMove(move);
+	}
+
+	@Override
+	public void end(int Value) {
+		writer.write(new GameRecord(columns, rows, Arrays.copyOf(moves, played), Arrays.copyOf(micros, played),
+				Arrays.copyOf(evals, played), Value));
+		channel.end(Value); //last - the console's end() exits
+	}
+
+	@Override
+	public void comment(String msg) {
+		channel.comment(msg);
+	}
+
+	@Override
+	public void evaluation(int value) {
+		eval = value;
+		channel.evaluation(value);
+	}
+
+	/**
+	 * Appends a move to the record.
+	 * @param move The move.
+	 * @param eval The mover's evaluation, or NO_EVAL.
+	 */
+	private void record(DomineeringMove move, int eval) {
+		if(played == moves.length) {
+			moves = Arrays.copyOf(moves, 2 * played);
+			micros = Arrays.copyOf(micros, 2 * played);
+			evals = Arrays.copyOf(evals, 2 * played);
+		}
+		long now = System.nanoTime();
+		moves[played] = move.getMove();
+		micros[played] = (int) Math.min(Integer.MAX_VALUE, (now - last) / 1000);
+		evals[played] = eval;
+		played++;
+		last = now;
+	}
+}
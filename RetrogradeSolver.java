@@ -0,0 +1,245 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The exact value of every position on a small board, worked out backwards
+ * from the end of the game and kept as one bit per position.
+ * <p>
+ * A position is indexed by the positions covered: bit p - 1 of the index is
+ * set if position p (numbered as in DomineeringBoard2) is covered. Who
+ * covered them does not matter to the rest of the game, and as every move
+ * covers two positions and H moves first, H is to move exactly when the
+ * number covered is a multiple of four. So one bit - whether the player to
+ * move wins - says everything, and a 5x5 board takes 2^25 bits, or 4MB.
+ * <p>
+ * A move only sets bits, so every position comes after the positions it
+ * leads to in the order of their indices. One pass from the full board down
+ * to the empty one therefore finds each value from values already found.
+ * Indices with an odd number covered cannot happen and are left as losses.
+ * <p>
+ * A solved board can be written to a file - "DRS1", the columns and rows as
+ * ints, then the bits as longs - and installed, after which
+ * DomineeringBoard2.outcome() looks values up instead of searching.
+ */
+public final class RetrogradeSolver {
+
+	public static final int MAX_POSITIONS = 30; //2^30 bits is 128MB
+
+	private static final byte[] MAGIC  = "DRS1".getBytes(StandardCharsets.US_ASCII);
+	private static final int    HEADER = MAGIC.length + 8; //magic, columns, rows
+
+	private static final Map<Long, RetrogradeSolver> INSTALLED
+		= new ConcurrentHashMap<Long, RetrogradeSolver>(); //by size, see key()
+
+	private final int    columns;
+	private final int    rows;
+	private final long[] wins; //bit i: the player to move wins with positions i covered
+
+	/**
+	 * @param columns Number of columns.
+	 * @param rows    Number of rows.
+	 * @param wins    The solved bits.
+	 */
+	private RetrogradeSolver(int columns, int rows, long[] wins) {
+		this.columns = columns;
+		this.rows = rows;
+		this.wins = wins;
+	}
+
+	/**
+	 * Solves every position on a board.
+	 * @param columns Number of columns.
+	 * @param rows    Number of rows.
+	 * @return The solved board.
+	 * @throws IllegalArgumentException If the board has more than MAX_POSITIONS positions.
+	 */
+	public static RetrogradeSolver solve(int columns, int rows) {
+		int n = columns * rows;
+		if(columns < 0 || rows < 0 || n > MAX_POSITIONS) {
+			throw new IllegalArgumentException("Cannot solve every position of a " + columns + "x" + rows + " board");
+		}
+		long[] wins   = new long[words(n)];
+		long   all    = (1L << n) - 1;
+		long   hFirst = 0; //positions with a position to their right
+		for(int r = 0; r < rows; r++) {
+			hFirst |= ((1L << (columns - 1)) - 1) << (r * columns);
+		}
+		long vFirst = (rows > 0 ? (1L << (n - columns)) - 1 : 0); //positions with a position below
+		for(long covered = all; covered >= 0; covered--) {
+			int count = Long.bitCount(covered);
+			if((count & 1) != 0) {
+				continue; //not a position
+			}
+			long    free    = ~covered & all;
+			boolean h       = ((count & 3) == 0);
+			int     second  = (h ? 1 : columns); //from the top/left position of a move to the other
+			long    anchors = (h ? free & (free >>> 1) & hFirst : free & (free >>> columns) & vFirst);
+			for(long bits = anchors; bits != 0; bits &= bits - 1) {
+				int  p     = Long.numberOfTrailingZeros(bits);
+				long after = covered | (1L << p) | (1L << (p + second));
+				if((wins[(int) (after >>> 6)] & (1L << after)) == 0) { //a move that leaves the opponent losing
+					wins[(int) (covered >>> 6)] |= 1L << covered;
+					break;
+				}
+			}
+		}
+		return new RetrogradeSolver(columns, rows, wins);
+	}
+
+	/**
+	 * @return Number of columns.
+	 */
+	public int getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @return Number of rows.
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * The exact value of a position.
+	 * @param board A board of this size.
+	 * @return 1 if H wins, -1 if V wins.
+	 */
+	public int value(DomineeringBoard2 board) {
+		assert (board.getColumns() == columns && board.getRows() == rows);
+		return value(board.coveredBits());
+	}
+
+	/**
+	 * The exact value of a position.
+	 * @param covered The positions covered, as in DomineeringBoard2.coveredBits().
+	 * @return 1 if H wins, -1 if V wins.
+	 */
+	public int value(long covered) {
+		boolean hToMove = ((Long.bitCount(covered) & 3) == 0);
+		boolean wins    = (this.wins[(int) (covered >>> 6)] & (1L << covered)) != 0;
+		return (hToMove == wins ? 1 : -1);
+	}
+
+	/**
+	 * Makes this board's values the ones DomineeringBoard2.outcome() uses for
+	 * boards of its size, in place of any installed before.
+	 */
+	public void install() {
+		INSTALLED.put(key(columns, rows), this);
+	}
+
+	/**
+	 * The solved board installed for a size.
+	 * @param columns Number of columns.
+	 * @param rows    Number of rows.
+	 * @return The solved board, or null if there is none.
+	 */
+	static RetrogradeSolver installed(int columns, int rows) {
+		return (INSTALLED.isEmpty() ? null : INSTALLED.get(key(columns, rows)));
+	}
+
+	/**
+	 * Writes the solved board to a file.
+	 * @param path The file, which is replaced.
+	 * @throws IOException If it cannot be written.
+	 */
+	public void writeTo(Path path) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER + 8 * wins.length);
+		buffer.put(MAGIC).putInt(columns).putInt(rows);
+		buffer.asLongBuffer().put(wins);
+		buffer.clear();
+		try(FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while(buffer.hasRemaining()) {
+				file.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Reads a solved board written by writeTo().
+	 * @param path The file.
+	 * @return The solved board.
+	 * @throws IOException If it cannot be read or is not a solved board.
+	 */
+	public static RetrogradeSolver readFrom(Path path) throws IOException {
+		try(FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER);
+			while(header.hasRemaining() && file.read(header) >= 0) {
+				//read the whole header
+			}
+			header.flip();
+			byte[] magic   = new byte[MAGIC.length];
+			int    columns = -1;
+			int    rows    = -1;
+			if(header.remaining() == HEADER) {
+				header.get(magic);
+				columns = header.getInt();
+				rows = header.getInt();
+			}
+			if(!Arrays.equals(magic, MAGIC) || columns < 0 || rows < 0 || (long) columns * rows > MAX_POSITIONS
+					|| file.size() != HEADER + 8L * words(columns * rows)) {
+				throw new IOException(path + " is not a solved board");
+			}
+			ByteBuffer bits = ByteBuffer.allocate(8 * words(columns * rows));
+			while(bits.hasRemaining() && file.read(bits) >= 0) {
+				//read the whole table
+			}
+			bits.flip();
+			long[] wins = new long[words(columns * rows)];
+			bits.asLongBuffer().get(wins);
+			return new RetrogradeSolver(columns, rows, wins);
+		}
+	}
+
+	/**
+	 * @param n Number of positions.
+	 * @return The longs needed for a bit per set of positions.
+	 */
+	private static int words(int n) {
+		return (int) Math.max(1, (1L << n) >>> 6);
+	}
+
+	/**
+	 * @param columns Number of columns.
+	 * @param rows    Number of rows.
+	 * @return The key of the size in INSTALLED.
+	 */
+	private static long key(int columns, int rows) {
+		return ((long) columns << 32) | rows;
+	}
+
+	/**
+	 * Solves a board and writes it to a file.
+	 * Usage: java RetrogradeSolver &lt;columns&gt; &lt;rows&gt; [file]
+	 */
+	public static void main(String[] args) throws IOException {
+		int columns = 0;
+		int rows    = 0;
+		try {
+			columns = Integer.parseInt(args[0]);
+			rows = Integer.parseInt(args[1]);
+		}
+		catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			System.err.println("Usage: java RetrogradeSolver <columns> <rows> [file]");
+			System.exit(1);
+		}
+		Path file = Paths.get(args.length > 2 ? args[2] : "domineering-" + columns + "x" + rows + ".solved");
+
+		long             start  = System.nanoTime();
+		RetrogradeSolver solved = solve(columns, rows);
+		double           time   = (System.nanoTime() - start) / 1e9;
+		solved.writeTo(file);
+		System.out.printf("%dx%d solved in %.2fs: %s wins. Written to %s%n", columns, rows, time,
+				(solved.value(0) == 1 ? "the first player (H)" : "the second player (V)"), file);
+	}
+}
@@ -0,0 +1,44 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for each top-level search of the engine, so
+ * that slow moves can be matched up with the positions that caused them.
+ * The event's duration is the time the search took. Unless a recording is
+ * on, all the engine does is read the clock.
+ */
+@Name("domineering.Search")
+@Label("Search")
+@Category("Domineering")
+@Description("A top-level search of the game tree")
+class SearchEvent extends jdk.jfr.Event {
+
+	@Label("Columns")
+	int columns;
+
+	@Label("Rows")
+	int rows;
+
+	@Label("Level")
+	@Description("The level the search was asked for (negative when solving exactly)")
+	int level;
+
+	@Label("Heuristic")
+	boolean heuristic;
+
+	@Label("Depth")
+	@Description("The height of the tree built")
+	int depth;
+
+	@Label("Nodes")
+	long nodes;
+
+	@Label("Outcome")
+	int outcome;
+
+	@Label("Move")
+	@Description("The move the player to move would make (empty at the end of the game)")
+	String move;
+}
@@ -0,0 +1,382 @@
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Statistics about the searches done by Board2.tree, for profiling.
+ * <p>
+ * Every thread that searches counts into its own Counters, so the search
+ * itself never synchronises; snapshot() adds up the counters of every thread
+ * when someone asks. A snapshot taken while searches are running is only
+ * approximately consistent, which is fine for monitoring. When a thread
+ * finishes, its counts are added to one total for finished threads and its
+ * Counters dropped, so pools which keep making threads do not make the list
+ * of counters grow.
+ * <p>
+ * The same figures can be published over JMX with registerMBean().
+ */
+public final class SearchStats {
+
+	public static final int CUTOFF_BUCKETS = 32; //cutoffs after the 32nd move are counted together
+
+	private static final Queue<Counters>       ALL     = new ConcurrentLinkedQueue<Counters>(); //of live threads
+	private static final Counters              RETIRED = new Counters(null); //of finished threads; also the lock
+	private static final ThreadLocal<Counters> LOCAL   = ThreadLocal.withInitial(() -> {
+		retire();
+		Counters c = new Counters(Thread.currentThread());
+		ALL.add(c);
+		return c;
+	});
+
+	private final long   nodes;
+	private final long   leaves;
+	private final long[] cutoffs;
+	private final long   tableHits;
+	private final long   tableMisses;
+	private final long   ponderHits;
+	private final long   ponderMisses;
+	private final int    maxDepth;
+	private final long   searches;
+	private final long   searchNanos;
+	private final long   aspirations;
+	private final long   researches;
+
+	/**
+	 * One thread's counts. Only that thread writes them.
+	 */
+	static final class Counters {
+		private final WeakReference<Thread> owner; //null for RETIRED
+
+		long         nodes;       //trees built
+		long         leaves;      //positions valued without looking further (end of game or heuristic)
+		final long[] cutoffs = new long[CUTOFF_BUCKETS]; //cutoffs[i] is cutoffs on the (i+1)th move tried
+		long         tableHits;   //positions found in a table of known positions
+		long         tableMisses; //positions looked for and not found
+		long         ponderHits;   //searches answered by pondering on the opponent's time
+		long         ponderMisses; //searches which had pondered on a different reply
+		int          maxDepth;    //deepest ply reached below a top-level search
+		int          depth;       //current ply
+		long         searches;    //top-level searches
+		long         searchNanos; //time spent in top-level searches
+		long         aspirations; //top-level searches begun with a narrowed window
+		long         researches;  //searches repeated because the outcome fell outside the window
+
+		/**
+		 * @param owner The thread which counts into these, or null.
+		 */
+		Counters(Thread owner) {
+			this.owner = (owner == null ? null : new WeakReference<Thread>(owner));
+		}
+
+		/**
+		 * @return Whether the thread which counts into these may still count.
+		 */
+		boolean alive() {
+			Thread thread = owner.get();
+			return thread != null && thread.isAlive();
+		}
+
+		/**
+		 * Adds another thread's counts to these.
+		 * @param other The counts, which must no longer change.
+		 */
+		void add(Counters other) {
+			nodes += other.nodes;
+			leaves += other.leaves;
+			tableHits += other.tableHits;
+			tableMisses += other.tableMisses;
+			ponderHits += other.ponderHits;
+			ponderMisses += other.ponderMisses;
+			searches += other.searches;
+			searchNanos += other.searchNanos;
+			aspirations += other.aspirations;
+			researches += other.researches;
+			maxDepth = Math.max(maxDepth, other.maxDepth);
+			for(int i = 0; i < CUTOFF_BUCKETS; i++) {
+				cutoffs[i] += other.cutoffs[i];
+			}
+		}
+
+		/**
+		 * Counts a node and goes one ply deeper.
+		 */
+		void enter() {
+			nodes++;
+			if(++depth > maxDepth) {
+				maxDepth = depth;
+			}
+		}
+
+		/**
+		 * Comes back up one ply.
+		 */
+		void leave() {
+			depth--;
+		}
+
+		/**
+		 * Counts a cutoff.
+		 * @param index How many moves were tried before it, starting from 0.
+		 */
+		void cutoff(int index) {
+			cutoffs[Math.min(index, CUTOFF_BUCKETS - 1)]++;
+		}
+
+		/**
+		 * Sets every count back to zero.
+		 */
+		void clear() {
+			nodes = leaves = tableHits = tableMisses = ponderHits = ponderMisses = 0;
+			searches = searchNanos = aspirations = researches = 0;
+			maxDepth = 0;
+			Arrays.fill(cutoffs, 0);
+		}
+	}
+
+	/**
+	 * The figures published over JMX.
+	 */
+	public interface SearchStatsMBean {
+		long getNodes();
+		long getLeafEvaluations();
+		long[] getCutoffsByMoveIndex();
+		long getTableHits();
+		long getTableMisses();
+		long getPonderHits();
+		long getPonderMisses();
+		int getMaxDepth();
+		long getSearches();
+		long getAspirations();
+		long getResearches();
+		double getNodesPerSecond();
+		void reset();
+	}
+
+	/**
+	 * @param all The counters to add up.
+	 */
+	private SearchStats(Iterable<Counters> all) {
+		long   n = 0, l = 0, h = 0, m = 0, ph = 0, pm = 0, s = 0, t = 0, a = 0, r = 0;
+		int    d = 0;
+		long[] c = new long[CUTOFF_BUCKETS];
+		for(Counters counters : all) {
+			n += counters.nodes;
+			l += counters.leaves;
+			h += counters.tableHits;
+			m += counters.tableMisses;
+			ph += counters.ponderHits;
+			pm += counters.ponderMisses;
+			s += counters.searches;
+			t += counters.searchNanos;
+			a += counters.aspirations;
+			r += counters.researches;
+			d = Math.max(d, counters.maxDepth);
+			for(int i = 0; i < CUTOFF_BUCKETS; i++) {
+				c[i] += counters.cutoffs[i];
+			}
+		}
+		nodes = n;
+		leaves = l;
+		tableHits = h;
+		tableMisses = m;
+		ponderHits = ph;
+		ponderMisses = pm;
+		searches = s;
+		searchNanos = t;
+		aspirations = a;
+		researches = r;
+		maxDepth = d;
+		cutoffs = c;
+	}
+
+	/**
+	 * The counters of the calling thread.
+	 * @return This thread's counters.
+	 */
+	static Counters local() {
+		return LOCAL.get();
+	}
+
+	/**
+	 * Adds up the counts of every thread so far.
+	 * @return The statistics.
+	 */
+	public static SearchStats snapshot() {
+		synchronized(RETIRED) {
+			retire();
+			List<Counters> all = new ArrayList<Counters>(ALL);
+			all.add(RETIRED);
+			return new SearchStats(all);
+		}
+	}
+
+	/**
+	 * Sets every thread's counts back to zero. Counts made by searches running
+	 * at the time may be lost.
+	 */
+	public static void reset() {
+		synchronized(RETIRED) {
+			RETIRED.clear();
+			for(Counters counters : ALL) {
+				counters.clear();
+			}
+		}
+	}
+
+	/**
+	 * Adds the counts of every finished thread to RETIRED and drops their
+	 * Counters.
+	 */
+	private static void retire() {
+		synchronized(RETIRED) {
+			for(Iterator<Counters> i = ALL.iterator(); i.hasNext(); ) {
+				Counters counters = i.next();
+				if(!counters.alive()) {
+					RETIRED.add(counters);
+					i.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Publishes the statistics over JMX as domineering:type=SearchStats.
+	 * Does nothing if they are already published.
+	 */
+	public static void registerMBean() {
+		SearchStatsMBean live = new SearchStatsMBean() {
+			public long getNodes()               { return snapshot().nodes(); }
+			public long getLeafEvaluations()     { return snapshot().leaves(); }
+			public long[] getCutoffsByMoveIndex() { return snapshot().cutoffs(); }
+			public long getTableHits()           { return snapshot().tableHits(); }
+			public long getTableMisses()         { return snapshot().tableMisses(); }
+			public long getPonderHits()          { return snapshot().ponderHits(); }
+			public long getPonderMisses()        { return snapshot().ponderMisses(); }
+			public int getMaxDepth()             { return snapshot().maxDepth(); }
+			public long getSearches()            { return snapshot().searches(); }
+			public long getAspirations()         { return snapshot().aspirations(); }
+			public long getResearches()          { return snapshot().researches(); }
+			public double getNodesPerSecond()    { return snapshot().nodesPerSecond(); }
+			public void reset()                  { SearchStats.reset(); }
+		};
+		try {
+			ObjectName name = new ObjectName("domineering:type=SearchStats");
+			if(!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(
+						new StandardMBean(live, SearchStatsMBean.class), name);
+			}
+		}
+		catch(JMException e) {
+			throw new IllegalStateException("Could not register search statistics", e);
+		}
+	}
+
+	/**
+	 * @return The number of trees built.
+	 */
+	public long nodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return The number of positions valued without searching further.
+	 */
+	public long leaves() {
+		return leaves;
+	}
+
+	/**
+	 * @return Cutoffs by how many moves were tried before them (the last entry
+	 *         counts every later move).
+	 */
+	public long[] cutoffs() {
+		return cutoffs.clone();
+	}
+
+	/**
+	 * @return The number of positions found in a table of known positions.
+	 */
+	public long tableHits() {
+		return tableHits;
+	}
+
+	/**
+	 * @return The number of positions looked for in a table and not found.
+	 */
+	public long tableMisses() {
+		return tableMisses;
+	}
+
+	/**
+	 * @return The number of searches answered by pondering.
+	 */
+	public long ponderHits() {
+		return ponderHits;
+	}
+
+	/**
+	 * @return The number of searches which had pondered on a different reply.
+	 */
+	public long ponderMisses() {
+		return ponderMisses;
+	}
+
+	/**
+	 * @return The deepest ply reached below a top-level search.
+	 */
+	public int maxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * @return The number of top-level searches.
+	 */
+	public long searches() {
+		return searches;
+	}
+
+	/**
+	 * @return The number of searches begun with an aspiration window.
+	 */
+	public long aspirations() {
+		return aspirations;
+	}
+
+	/**
+	 * @return The number of times a search was repeated with a wider window.
+	 */
+	public long researches() {
+		return researches;
+	}
+
+	/**
+	 * @return Nodes per second of time spent in top-level searches.
+	 */
+	public double nodesPerSecond() {
+		return (searchNanos == 0 ? 0 : nodes / (searchNanos / 1e9));
+	}
+
+	@Override
+	/**
+	 * The statistics on one line.
+	 * @return A human-readable summary.
+	 */
+	public String toString() {
+		long total = 0;
+		for(long c : cutoffs) {
+			total += c;
+		}
+		return String.format("nodes=%d leaves=%d cutoffs=%d (first move %.1f%%) table=%d/%d ponder=%d/%d"
+				+ " max depth=%d searches=%d aspirations=%d researches=%d nps=%.0f", nodes, leaves, total,
+				(total == 0 ? 0 : 100.0 * cutoffs[0] / total), tableHits, tableHits + tableMisses, ponderHits,
+				ponderHits + ponderMisses, maxDepth, searches, aspirations, researches, nodesPerSecond());
+	}
+}
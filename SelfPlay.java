@@ -0,0 +1,380 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays engine configurations against each other to measure changes to the
+ * engine. For every board size and every pair of configurations it plays a
+ * number of games, alternating colours and starting each game from a
+ * different random opening, and prints one CSV row per pairing:
+ * <pre>
+ *   size,engine,opponent,games,wins,win_rate,moves,avg_move_ms,nodes,nodes_per_sec
+ * </pre>
+ * The statistics are for "engine" against "opponent". Games are scheduled on a
+ * work-stealing pool with one game per core; the two players of a game talk
+ * over a QueueMoveChannel pair, so the engine plays exactly as it does on the
+ * console.
+ * <p>
+ * Usage: java SelfPlay &lt;games&gt; &lt;sizes&gt; &lt;configs&gt; [opening plies] [seed]
+ * <br>
+ * e.g. java SelfPlay 20 4x4,6x6 exact,h3,h5 where "exact" solves the game,
+ * "hN" searches N levels before using the heuristic and "aN" does the same
+ * with graded outcomes and aspiration windows. Letters after either turn on
+ * more of the search: "q" searches swing moves past the horizon, "r" reduces
+ * late moves and "f" prunes futile moves at the frontier (e.g. "a4qrf").
+ */
+public class SelfPlay {
+
+	private static final int   MAX_EXACT_SIZE = 20; //exact solving is only practical up to 5x4/4x5
+	private static final int[] ASPIRATION     = {1, 4, 16}; //the steps "aN" engines widen their windows by
+
+	/**
+	 * How an engine searches.
+	 */
+	private static class Config {
+		private final String  name;
+		private final int     level;
+		private final boolean heuristic;
+		private final boolean aspiration;
+		private final boolean quiescence;
+		private final boolean reductions;
+		private final boolean futility;
+
+		/**
+		 * @param name "exact", or "h" or "a" followed by a depth and any options.
+		 */
+		private Config(String name) {
+			int digits = 1; //end of the depth
+			while(digits < name.length() && Character.isDigit(name.charAt(digits))) {
+				digits++;
+			}
+			this.name = name;
+			this.heuristic = !name.equals("exact");
+			this.aspiration = name.startsWith("a");
+			this.quiescence = heuristic && name.indexOf('q', digits) >= 0;
+			this.reductions = heuristic && name.indexOf('r', digits) >= 0;
+			this.futility = heuristic && name.indexOf('f', digits) >= 0;
+			this.level = (heuristic ? Integer.parseInt(name.substring(1, digits)) : -10); //bogus level for exact play
+		}
+	}
+
+	/**
+	 * What one player did in one game.
+	 */
+	private static class Result {
+		private boolean won;
+		private int     moves;
+		private long    thinkNanos;
+		private long    nodes;
+	}
+
+	/**
+	 * A board which counts how many boards are played from it. Every node the
+	 * search visits is made by play(), so this counts the nodes of a search
+	 * without touching the engine.
+	 */
+	private static class CountingBoard extends Board2<DomineeringMove> {
+		private final Board2<DomineeringMove> board;
+		private final Result                  result;
+
+		/**
+		 * @param board  The board to count plays from.
+		 * @param result Where to count them.
+		 */
+		private CountingBoard(Board2<DomineeringMove> board, Result result) {
+			this.board = board;
+			this.result = result;
+		}
+
+		@Override
+		Player nextPlayer() {
+			return board.nextPlayer();
+		}
+
+		@Override
+		Set<DomineeringMove> availableMoves() {
+			return board.availableMoves();
+		}
+
+		@Override
+		int value() {
+			return board.value();
+		}
+
+		@Override
+		Board2<DomineeringMove> play(DomineeringMove move) {
+			result.nodes++;
+			return new CountingBoard(board.play(move), result);
+		}
+
+		@Override
+		int heuristicValue() {
+			return board.heuristicValue();
+		}
+
+		@Override
+		int horizonValue(int alpha, int beta) {
+			SearchStats.Counters stats = SearchStats.local();
+			long                 nodes = stats.nodes;
+			int                  value = board.horizonValue(alpha, beta);
+			result.nodes += stats.nodes - nodes; //searched past the horizon without play()
+			return value;
+		}
+
+		@Override
+		Iterable<DomineeringMove> searchOrder() {
+			return board.searchOrder();
+		}
+
+		@Override
+		boolean reducesLateMoves() {
+			return board.reducesLateMoves();
+		}
+
+		@Override
+		int futilityMargin() {
+			return board.futilityMargin();
+		}
+
+		@Override
+		int terminalValue() {
+			return board.terminalValue();
+		}
+
+		@Override
+		int maxOutcome() {
+			return board.maxOutcome();
+		}
+
+		@Override
+		Table<DomineeringMove, GameTree2<DomineeringMove>> emptyTable() {
+			return board.emptyTable();
+		}
+
+		@Override
+		int treePlies() {
+			return board.treePlies();
+		}
+
+		@Override
+		int outcome(int level, int alpha, int beta) {
+			SearchStats.Counters stats   = SearchStats.local();
+			long                 nodes   = stats.nodes;
+			int                  outcome = board.outcome(level, alpha, beta);
+			result.nodes += stats.nodes - nodes; //searched below the tree without play()
+			return outcome;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return board.equals(obj instanceof CountingBoard ? ((CountingBoard) obj).board : obj);
+		}
+
+		@Override
+		public int hashCode() {
+			return board.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return board.toString();
+		}
+	}
+
+	/**
+	 * A channel which times how long its player thinks about each move.
+	 */
+	private static class TimedChannel implements MoveChannel<DomineeringMove> {
+		private final MoveChannel<DomineeringMove> channel;
+		private final Result                       result;
+		private long                               thinking; //when the player started thinking
+
+		/**
+		 * @param channel The channel to time.
+		 * @param result  Where to record the times.
+		 */
+		private TimedChannel(MoveChannel<DomineeringMove> channel, Result result) {
+			this.channel = channel;
+			this.result = result;
+			this.thinking = System.nanoTime();
+		}
+
+		@Override
+		public DomineeringMove getMove() {
+			DomineeringMove move = channel.getMove();
+			thinking = System.nanoTime();
+			return move;
+		}
+
+		@Override
+		public void giveMove(DomineeringMove move) {
+			result.thinkNanos += System.nanoTime() - thinking;
+			result.moves++;
+			channel.giveMove(move);
+		}
+
+		@Override
+		public void end(int Value) {
+			channel.end(Value);
+		}
+
+		@Override
+		public void comment(String msg) {
+			channel.comment(msg);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int          games    = 0;
+		List<int[]>  sizes    = new ArrayList<int[]>();
+		List<Config> configs  = new ArrayList<Config>();
+		int          openings = 2;
+		long         seed     = 1;
+		try {
+			games = Integer.parseInt(args[0]);
+			for(String size : args[1].split(",")) {
+				String[] cr = size.split("x");
+				sizes.add(new int[] {Integer.parseInt(cr[0]), Integer.parseInt(cr[1])});
+			}
+			for(String config : args[2].split(",")) {
+				configs.add(new Config(config));
+			}
+			if(args.length > 3) {
+				openings = Integer.parseInt(args[3]);
+			}
+			if(args.length > 4) {
+				seed = Long.parseLong(args[4]);
+			}
+		}
+		catch(NumberFormatException | ArrayIndexOutOfBoundsException | StringIndexOutOfBoundsException e) {
+			System.err.println("Usage: java SelfPlay <games> <sizes e.g. 4x4,6x6> <configs e.g. exact,h3,h5>"
+					+ " [opening plies] [seed]");
+			System.exit(1);
+		}
+
+		int             plies     = openings;
+		ExecutorService pool      = Executors.newWorkStealingPool();
+		ExecutorService opponents = Executors.newCachedThreadPool(); //the second player of each game
+		System.out.println("size,engine,opponent,games,wins,win_rate,moves,avg_move_ms,nodes,nodes_per_sec");
+		for(int[] size : sizes) {
+			for(Config a : configs) {
+				for(Config b : configs) {
+					if(a == b) {
+						continue;
+					}
+					if(size[0] * size[1] > MAX_EXACT_SIZE && !(a.heuristic && b.heuristic)) {
+						System.err.println("Skipping " + a.name + " v " + b.name + " on " + size[0] + "x" + size[1]
+								+ ": too big to solve exactly");
+						continue;
+					}
+					List<Future<Result>> results = new ArrayList<Future<Result>>();
+					for(int g = 0; g < games; g++) {
+						long gameSeed = seed + 1000003L * g;
+						boolean aFirst = (g % 2 == 0);
+						results.add(pool.submit(() -> game(size[0], size[1], a, b, aFirst, plies, gameSeed,
+								opponents)));
+					}
+					Result total = new Result();
+					int    wins  = 0;
+					for(Future<Result> f : results) {
+						Result r = f.get();
+						wins += (r.won ? 1 : 0);
+						total.moves += r.moves;
+						total.thinkNanos += r.thinkNanos;
+						total.nodes += r.nodes;
+					}
+					System.out.printf("%dx%d,%s,%s,%d,%d,%.3f,%d,%.3f,%d,%.0f%n", size[0], size[1], a.name, b.name,
+							games, wins, (double) wins / Math.max(1, games), total.moves,
+							total.thinkNanos / 1e6 / Math.max(1, total.moves), total.nodes,
+							total.nodes / Math.max(1e-9, total.thinkNanos / 1e9));
+				}
+			}
+		}
+		pool.shutdown();
+		opponents.shutdown();
+	}
+
+	/**
+	 * Plays one game between two configurations.
+	 * @param columns   Number of columns on the board.
+	 * @param rows      Number of rows on the board.
+	 * @param a         The configuration being measured.
+	 * @param b         Its opponent.
+	 * @param aFirst    Whether a moves first after the opening.
+	 * @param openings  How many random moves to start with.
+	 * @param seed      The seed for the opening.
+	 * @param opponents Where to run b.
+	 * @return What a did in the game.
+	 */
+	private static Result game(int columns, int rows, Config a, Config b, boolean aFirst, int openings, long seed,
+			ExecutorService opponents) throws Exception {
+		Board2<DomineeringMove> start  = new DomineeringBoard2(columns, rows);
+		Random                  random = new Random(seed);
+		for(int i = 0; i < openings && start.value() == 0; i++) {
+			Set<DomineeringMove> moves = start.availableMoves();
+			Iterator<DomineeringMove> it = moves.iterator();
+			for(int skip = random.nextInt(moves.size()); skip > 0; skip--) {
+				it.next();
+			}
+			start = start.play(it.next());
+		}
+
+		QueueMoveChannel<DomineeringMove> channel = new QueueMoveChannel<DomineeringMove>();
+		Result ra = new Result();
+		Result rb = new Result();
+		Board2<DomineeringMove> board = start;
+		Future<?> other = opponents.submit(() -> player(board, b, !aFirst, channel.peer(), rb));
+		player(board, a, aFirst, channel, ra);
+		other.get();
+
+		OptionalInt value = channel.result();
+		Player      aSide = (aFirst ? board.nextPlayer() : (board.nextPlayer() == Player.MAXIMIZER
+				? Player.MINIMIZER : Player.MAXIMIZER));
+		ra.won = value.isPresent() && value.getAsInt() == (aSide == Player.MAXIMIZER ? 1 : -1);
+		return ra;
+	}
+
+	/**
+	 * Plays one side of a game.
+	 * @param board  The position to play from.
+	 * @param config How to search.
+	 * @param first  Whether this side moves first from the position.
+	 * @param c      The channel to the other side.
+	 * @param result Where to record what happened.
+	 */
+	private static void player(Board2<DomineeringMove> board, Config config, boolean first,
+			MoveChannel<DomineeringMove> c, Result result) {
+		TimedChannel               timed   = new TimedChannel(c, result);
+		long                       start   = System.nanoTime();
+		DomineeringBoard2          from    = (DomineeringBoard2) board;
+		if(config.aspiration) {
+			from = from.graded();
+		}
+		if(config.quiescence) {
+			from = from.quiescent();
+		}
+		if(config.reductions) {
+			from = from.lateMoveReductions();
+		}
+		if(config.futility) {
+			from = from.futilityPruning();
+		}
+		Engine                     engine  = (config.aspiration ? Engine.INLINE.aspiration(ASPIRATION) : Engine.INLINE);
+		int                        win     = from.maxOutcome();
+		GameTree2<DomineeringMove> tree    = new CountingBoard(from, result).tree(config.level, -win, win,
+				config.heuristic);
+		if(first) {
+			tree.firstPlayer(timed, config.level, -win, win, config.heuristic, engine);
+		}
+		else {
+			result.thinkNanos += System.nanoTime() - start; //built while the other side thinks - count it anyway
+			tree.secondPlayer(timed, config.level, -win, win, config.heuristic, engine);
+		}
+	}
+}
@@ -0,0 +1,248 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+/**
+ * A move channel over a socket, for a referee process driving the engine.
+ * <p>
+ * The protocol is line based ASCII, with moves written "x,y" exactly as on
+ * the console:
+ * <pre>
+ *   referee to engine:  first horizontal 4 4   (once, as the program arguments)
+ *                       x,y                    (each of the opponent's moves)
+ *   engine to referee:  x,y                    (each of the engine's moves)
+ *                       # text                 (comments, only if switched on)
+ *                       end v                  (the value of the outcome)
+ * </pre>
+ * Moves are parsed and printed straight from and into byte buffers, so a move
+ * costs no Strings. Comments are off by default; when on, they are held back
+ * and sent in the same gathering write as the next move, so each ply is one
+ * write.
+ * <p>
+ * The referee's moves are checked against the board as it stands. An
+ * off-board, malformed or illegal move throws an IllegalArgumentException or
+ * IllegalStateException, which abandons this game only.
+ */
+public class SocketMoveChannel implements MoveChannel<DomineeringMove> {
+
+	private final SocketChannel socket;
+	private final ByteBuffer    in  = ByteBuffer.allocateDirect(256);
+	private final ByteBuffer    out = ByteBuffer.allocateDirect(64);
+	private final StringBuilder pending = new StringBuilder(); //comments waiting for the next write
+	private final boolean       comments;
+	private int                 columns;
+	private int                 rows;
+	private boolean             vertical; //whether the referee plays vertical
+	private BitSet              played = new BitSet(); //positions covered so far
+
+	/**
+	 * @param socket   A connected socket in blocking mode.
+	 * @param comments Whether to send comments to the referee.
+	 */
+	public SocketMoveChannel(SocketChannel socket, boolean comments) {
+		this.socket = socket;
+		this.comments = comments;
+		in.flip(); //start with nothing buffered
+	}
+
+	/**
+	 * Reads the referee's opening line, which has the same four words as the
+	 * arguments of BlackBoxDomineering2.
+	 * @return The words of the opening line.
+	 */
+	public String[] readHeader() {
+		StringBuilder line = new StringBuilder();
+		for(int b = next(); b != '\n'; b = next()) {
+			if(b != '\r') {
+				line.append((char) b);
+			}
+		}
+		return line.toString().trim().split("\\s+");
+	}
+
+	/**
+	 * Sets the board, which is needed to turn x,y into positions and to check
+	 * the referee's moves.
+	 * @param columns  Number of columns on the board.
+	 * @param rows     Number of rows on the board.
+	 * @param vertical Whether the referee plays vertical (goes second).
+	 */
+	public void setBoard(int columns, int rows, boolean vertical) {
+		this.columns = columns;
+		this.rows = rows;
+		this.vertical = vertical;
+		this.played = new BitSet(rows * columns + 1);
+	}
+
+	@Override
+	/**
+	 * Reads the opponent's move as "x,y".
+	 * @return The move as a DomineeringMove.
+	 * @throws IllegalArgumentException If the move is not legal on the board.
+	 */
+	public DomineeringMove getMove() {
+		int x = readInt(',');
+		int y = readInt('\n');
+		if(x >= columns - (vertical ? 0 : 1) || y >= rows - (vertical ? 1 : 0)) {
+			throw new IllegalArgumentException("Move " + x + "," + y + " from referee is off the board");
+		}
+		int position = x + columns * y + 1;
+		int second   = position + (vertical ? columns : 1); //square below (V) or to the right (H)
+		if(played.get(position) || played.get(second)) {
+			throw new IllegalArgumentException("Move " + x + "," + y + " from referee covers a covered square");
+		}
+		played.set(position);
+		played.set(second);
+		return DomineeringMove.of(position);
+	}
+
+	@Override
+	/**
+	 * Sends the engine's move as "x,y", after any comments held back.
+	 * @param move The move made.
+	 */
+	public void giveMove(DomineeringMove move) {
+		played.set(move.getMove());
+		played.set(move.getMove() + (vertical ? 1 : columns)); //the engine plays the other way
+		out.clear();
+		putInt((move.getMove() - 1) % columns);
+		out.put((byte) ',');
+		putInt((move.getMove() - 1) / columns);
+		out.put((byte) '\n');
+		send();
+	}
+
+	@Override
+	/**
+	 * Sends the outcome and closes the connection.
+	 * @param Value The value of the outcome.
+	 */
+	public void end(int Value) {
+		out.clear();
+		out.put((byte) 'e').put((byte) 'n').put((byte) 'd').put((byte) ' ');
+		putInt(Value);
+		out.put((byte) '\n');
+		send();
+		close();
+	}
+
+	@Override
+	/**
+	 * Holds a comment back until the next move, if comments are switched on.
+	 * @param msg The message.
+	 */
+	public void comment(String msg) {
+		if(comments) {
+			for(String line : msg.split("\n")) {
+				pending.append("# ").append(line).append('\n');
+			}
+		}
+	}
+
+	/**
+	 * Closes the connection.
+	 */
+	public void close() {
+		try {
+			socket.close();
+		}
+		catch(IOException e) {
+			//nothing more can be done with this connection
+		}
+	}
+
+	/**
+	 * Reads a non-negative decimal number up to a terminator.
+	 * @param terminator The character after the number.
+	 * @return The number.
+	 * @throws IllegalArgumentException If it is too big for an int.
+	 */
+	private int readInt(char terminator) {
+		int n      = 0;
+		int digits = 0;
+		for(int b = next(); b != terminator; b = next()) {
+			if(b >= '0' && b <= '9') {
+				if(n > (Integer.MAX_VALUE - (b - '0')) / 10) {
+					throw new IllegalArgumentException("Number too big in move from referee");
+				}
+				n = 10 * n + (b - '0');
+				digits++;
+			}
+			else if(b != ' ' && b != '\r') {
+				throw new IllegalStateException("Malformed move from referee");
+			}
+		}
+		if(digits == 0) {
+			throw new IllegalStateException("Malformed move from referee");
+		}
+		return n;
+	}
+
+	/**
+	 * Puts a decimal number into the output buffer.
+	 * @param n The number.
+	 */
+	private void putInt(int n) {
+		if(n < 0) {
+			out.put((byte) '-');
+			n = -n;
+		}
+		int start = out.position();
+		do {
+			out.put((byte) ('0' + n % 10));
+			n /= 10;
+		} while(n > 0);
+		for(int i = start, j = out.position() - 1; i < j; i++, j--) { //digits went in backwards
+			byte b = out.get(i);
+			out.put(i, out.get(j));
+			out.put(j, b);
+		}
+	}
+
+	/**
+	 * The next byte from the socket, refilling the buffer when it runs out.
+	 * @return The byte.
+	 */
+	private int next() {
+		if(!in.hasRemaining()) {
+			in.clear();
+			try {
+				if(socket.read(in) < 0) {
+					throw new IllegalStateException("Referee closed the connection");
+				}
+			}
+			catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			in.flip();
+		}
+		return in.get();
+	}
+
+	/**
+	 * Writes the output buffer, preceded by any comments held back, in one
+	 * gathering write.
+	 */
+	private void send() {
+		out.flip();
+		try {
+			if(pending.length() == 0) { //the usual case - just the move
+				while(out.hasRemaining()) {
+					socket.write(out);
+				}
+				return;
+			}
+			ByteBuffer[] buffers = {ByteBuffer.wrap(pending.toString().getBytes(StandardCharsets.US_ASCII)), out};
+			pending.setLength(0);
+			while(out.hasRemaining()) {
+				socket.write(buffers);
+			}
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,188 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Exact values of solved positions, kept in a file mapped into memory so that
+ * every engine process on the host which opens the same file shares them. A
+ * referee starting one BlackBoxDomineering2 per game then solves the early
+ * positions once rather than once per game.
+ * <p>
+ * The file is a table of longs, open addressed: a position's hash picks a
+ * slot and it goes in the first empty one from there. A slot holds the hash
+ * with its lowest bit replaced by whether H wins, and 0 if empty, so a whole
+ * entry is written by one compare-and-set and processes never see half of
+ * one or need a lock. Entries are never removed; once the slots a position
+ * could go in are full, it is simply not kept.
+ * <p>
+ * Positions are hashed as in MutableDomineeringBoard.canonicalHash(), the
+ * same for a board and its mirror images, so those share an entry.
+ */
+public final class SolvedCache {
+
+	public static final long DEFAULT_BYTES = 64L << 20;
+
+	private static final int PROBES   = 16;                       //slots looked at per position
+	private static final int MAX_SIZE = Integer.MAX_VALUE / 2 + 1; //1GB, as one buffer
+
+	private static final VarHandle SLOTS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+	private static volatile SolvedCache installed;
+
+	private final MappedByteBuffer buffer;
+	private final int              mask; //slots - 1
+
+	/**
+	 * @param buffer The mapped file.
+	 */
+	private SolvedCache(MappedByteBuffer buffer) {
+		this.buffer = buffer;
+		this.mask = buffer.capacity() / 8 - 1;
+	}
+
+	/**
+	 * Opens a cache, or makes one if the file does not exist or is empty. The
+	 * size of an existing cache is kept, as other processes may be using it.
+	 * The file is locked while its size is settled, so processes making the
+	 * same new cache at once agree on one size.
+	 * @param path  The file.
+	 * @param bytes The size of a new cache: the largest power of two slots
+	 *              that fits, from one to 1GB of them.
+	 * @return The cache.
+	 * @throws IOException If the file cannot be opened or mapped or is not a cache.
+	 */
+	public static SolvedCache open(Path path, long bytes) throws IOException {
+		try(FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			long size;
+			FileLock lock = file.lock();
+			try {
+				size = file.size();
+				if(size == 0) {
+					size = Long.highestOneBit(Math.min(MAX_SIZE, Math.max(8, bytes)) / 8) * 8;
+					file.write(ByteBuffer.allocate(1), size - 1); //an empty slot's last byte, so the file has its size
+				}
+				else if(size > MAX_SIZE || size % 8 != 0 || Long.bitCount(size / 8) != 1) {
+					throw new IOException(path + " is not a cache of solved positions");
+				}
+			}
+			finally {
+				lock.release();
+			}
+			return new SolvedCache(file.map(FileChannel.MapMode.READ_WRITE, 0, size)); //the mapping outlives the channel
+		}
+	}
+
+	/**
+	 * The cache configured on the command line: "-Ddomineering.cache=&lt;file&gt;",
+	 * with "-Ddomineering.cache.mb=&lt;megabytes&gt;" for the size if it is new.
+	 * @return The cache, or null if none is configured.
+	 * @throws IOException If the file cannot be opened or mapped or is not a cache.
+	 * @throws NumberFormatException If the size is not a number.
+	 */
+	public static SolvedCache configured() throws IOException {
+		String file = System.getProperty("domineering.cache");
+		if(file == null) {
+			return null;
+		}
+		String megabytes = System.getProperty("domineering.cache.mb");
+		return open(Paths.get(file), (megabytes == null ? DEFAULT_BYTES : Long.parseLong(megabytes) << 20));
+	}
+
+	/**
+	 * Makes this the cache DomineeringBoard2.outcome() uses, in place of any
+	 * installed before.
+	 */
+	public void install() {
+		installed = this;
+	}
+
+	/**
+	 * Stops DomineeringBoard2.outcome() using a cache.
+	 */
+	static void uninstall() {
+		installed = null;
+	}
+
+	/**
+	 * @return The cache DomineeringBoard2.outcome() uses, or null if there is none.
+	 */
+	static SolvedCache installed() {
+		return installed;
+	}
+
+	/**
+	 * @return The number of slots.
+	 */
+	public int size() {
+		return mask + 1;
+	}
+
+	/**
+	 * Looks a position up.
+	 * @param hash The position's canonical hash.
+	 * @return 1 if H wins, -1 if V wins, 0 if the position is not in the cache.
+	 */
+	int get(long hash) {
+		long key = key(hash);
+		for(int i = 0; i < PROBES; i++) {
+			long slot = (long) SLOTS.getVolatile(buffer, index(hash, i));
+			if(slot == 0) {
+				return 0;
+			}
+			if((slot & ~1L) == key) {
+				return ((slot & 1) != 0 ? 1 : -1);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Keeps a position's value, unless it is already there or its slots are full.
+	 * @param hash  The position's canonical hash.
+	 * @param value 1 if H wins, -1 if V wins.
+	 */
+	void put(long hash, int value) {
+		long key   = key(hash);
+		long entry = key | (value > 0 ? 1 : 0);
+		for(int i = 0; i < PROBES; i++) {
+			int  at   = index(hash, i);
+			long slot = (long) SLOTS.getVolatile(buffer, at);
+			if(slot == 0) {
+				if(SLOTS.compareAndSet(buffer, at, 0L, entry)) {
+					return;
+				}
+				slot = (long) SLOTS.getVolatile(buffer, at); //another process took it first
+			}
+			if((slot & ~1L) == key) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @param hash A position's hash.
+	 * @return What its slot holds but the value bit, never 0.
+	 */
+	private static long key(long hash) {
+		long key = hash & ~1L;
+		return (key == 0 ? 2 : key);
+	}
+
+	/**
+	 * @param hash  A position's hash.
+	 * @param probe How many slots have been looked at already.
+	 * @return The byte offset of the next slot to look at.
+	 */
+	private int index(long hash, int probe) {
+		return (int) ((hash + probe) & mask) * 8;
+	}
+}
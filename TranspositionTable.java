@@ -0,0 +1,230 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A transposition table kept outside the Java heap, so that a table of
+ * several gigabytes costs the garbage collector nothing. Entries live in
+ * direct ByteBuffers of up to a gigabyte each, or in a file mapped into
+ * memory, in which case the table is still there the next time the file is
+ * opened.
+ * <p>
+ * Each entry is 16 bytes: the position's 64-bit hash XORed with its data,
+ * then the data, packed into a long as
+ * <pre>
+ *   bit  63     1 if the entry is in use
+ *   bits 42-62  the best move's position, 0 if none
+ *   bits 40-41  the bound: EXACT, LOWER or UPPER
+ *   bits 32-39  the depth searched, EXACT_DEPTH if to the end of the game
+ *   bits  0-31  the value
+ * </pre>
+ * A position goes in the entry its hash indexes, replacing what was there
+ * unless that is the same position searched deeper. Searches on different
+ * threads write without locking; storing the hash XORed with the data means
+ * an entry half written by one thread while another reads it does not match
+ * the hash, and is a miss rather than a wrong value.
+ */
+public final class TranspositionTable {
+
+	public static final int EXACT       = 0; //the value is the position's value
+	public static final int LOWER       = 1; //the position's value is at least the value: it failed high
+	public static final int UPPER       = 2; //the position's value is at most the value: it failed low
+	public static final int EXACT_DEPTH = 255;
+
+	private static final int  ENTRY     = 16;      //bytes per entry
+	private static final int  SEGMENT   = 1 << 30; //bytes per buffer
+	private static final long USED      = 1L << 63;
+	private static final int  MOVE_BITS = 21;
+
+	private static volatile TranspositionTable installed;
+
+	private final ByteBuffer[] segments;
+	private final long         mask; //entries - 1
+
+	/**
+	 * A table in memory, empty.
+	 * @param bytes The most memory to use. The table is the largest power of
+	 *              two entries that fits, and at least one.
+	 */
+	public TranspositionTable(long bytes) {
+		long size = entries(bytes) * ENTRY;
+		this.segments = new ByteBuffer[(int) ((size + SEGMENT - 1) / SEGMENT)];
+		for(int i = 0; i < segments.length; i++) {
+			segments[i] = ByteBuffer.allocateDirect((int) Math.min(SEGMENT, size - (long) i * SEGMENT));
+		}
+		this.mask = size / ENTRY - 1;
+	}
+
+	/**
+	 * @param segments The buffers.
+	 * @param entries  The number of entries in them.
+	 */
+	private TranspositionTable(ByteBuffer[] segments, long entries) {
+		this.segments = segments;
+		this.mask = entries - 1;
+	}
+
+	/**
+	 * A table in a file mapped into memory, with whatever the file already
+	 * holds. Changes reach the file as the operating system writes them out,
+	 * or on force().
+	 * @param path  The file, created if it does not exist.
+	 * @param bytes The size of the table, as for TranspositionTable(long). A
+	 *              file of another size is cut or extended to it.
+	 * @return The table.
+	 * @throws IOException If the file cannot be opened or mapped.
+	 */
+	public static TranspositionTable open(Path path, long bytes) throws IOException {
+		long size = entries(bytes) * ENTRY;
+		try(FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			if(file.size() > size) {
+				file.truncate(size);
+			}
+			ByteBuffer[] segments = new ByteBuffer[(int) ((size + SEGMENT - 1) / SEGMENT)];
+			for(int i = 0; i < segments.length; i++) {
+				long start = (long) i * SEGMENT;
+				segments[i] = file.map(FileChannel.MapMode.READ_WRITE, start, Math.min(SEGMENT, size - start));
+			}
+			return new TranspositionTable(segments, size / ENTRY); //the mappings outlive the channel
+		}
+	}
+
+	/**
+	 * The table configured on the command line: "-Ddomineering.tt=&lt;megabytes&gt;"
+	 * for a table in memory, and "-Ddomineering.tt.file=&lt;file&gt;" as well to
+	 * keep it in a file.
+	 * @return The table, or null if none is configured.
+	 * @throws IOException If the file cannot be opened or mapped.
+	 * @throws NumberFormatException If the size is not a number.
+	 */
+	public static TranspositionTable configured() throws IOException {
+		String megabytes = System.getProperty("domineering.tt");
+		if(megabytes == null) {
+			return null;
+		}
+		long   bytes = Long.parseLong(megabytes) << 20;
+		String file  = System.getProperty("domineering.tt.file");
+		return (file == null ? new TranspositionTable(bytes) : open(Paths.get(file), bytes));
+	}
+
+	/**
+	 * Makes this the table exact searches use (see MutableDomineeringBoard),
+	 * in place of any installed before.
+	 */
+	public void install() {
+		installed = this;
+	}
+
+	/**
+	 * Stops exact searches using a table.
+	 */
+	static void uninstall() {
+		installed = null;
+	}
+
+	/**
+	 * @return The table exact searches use, or null if there is none.
+	 */
+	static TranspositionTable installed() {
+		return installed;
+	}
+
+	/**
+	 * @return The number of entries.
+	 */
+	public long size() {
+		return mask + 1;
+	}
+
+	/**
+	 * Looks a position up.
+	 * @param hash The position's hash.
+	 * @return Its entry's data, or 0 if it is not in the table.
+	 */
+	long probe(long hash) {
+		long       offset  = (hash & mask) * ENTRY;
+		ByteBuffer segment = segments[(int) (offset / SEGMENT)];
+		int        at      = (int) (offset % SEGMENT);
+		long       data    = segment.getLong(at + 8);
+		return ((data & USED) != 0 && (segment.getLong(at) ^ data) == hash ? data : 0);
+	}
+
+	/**
+	 * Stores a position, unless its entry holds the same position searched
+	 * deeper.
+	 * @param hash  The position's hash.
+	 * @param value Its value.
+	 * @param depth The depth searched, from 0 to EXACT_DEPTH.
+	 * @param bound EXACT, LOWER or UPPER.
+	 * @param move  The best move's position, or 0.
+	 */
+	void store(long hash, int value, int depth, int bound, int move) {
+		assert (depth >= 0 && depth <= EXACT_DEPTH && move >= 0 && move < 1 << MOVE_BITS);
+		long       offset  = (hash & mask) * ENTRY;
+		ByteBuffer segment = segments[(int) (offset / SEGMENT)];
+		int        at      = (int) (offset % SEGMENT);
+		long       old     = segment.getLong(at + 8);
+		if((old & USED) != 0 && (segment.getLong(at) ^ old) == hash && depth(old) > depth) {
+			return; //keep the deeper search
+		}
+		long data = USED | ((long) move << 42) | ((long) bound << 40) | ((long) depth << 32) | (value & 0xFFFFFFFFL);
+		segment.putLong(at, hash ^ data);
+		segment.putLong(at + 8, data);
+	}
+
+	/**
+	 * Writes a table kept in a file out to it.
+	 */
+	public void force() {
+		for(ByteBuffer segment : segments) {
+			if(segment instanceof MappedByteBuffer) {
+				((MappedByteBuffer) segment).force();
+			}
+		}
+	}
+
+	/**
+	 * @param data An entry's data, from probe().
+	 * @return The value.
+	 */
+	static int value(long data) {
+		return (int) data;
+	}
+
+	/**
+	 * @param data An entry's data, from probe().
+	 * @return The depth searched.
+	 */
+	static int depth(long data) {
+		return (int) (data >>> 32) & 0xFF;
+	}
+
+	/**
+	 * @param data An entry's data, from probe().
+	 * @return EXACT, LOWER or UPPER.
+	 */
+	static int bound(long data) {
+		return (int) (data >>> 40) & 3;
+	}
+
+	/**
+	 * @param data An entry's data, from probe().
+	 * @return The best move's position, or 0 if none.
+	 */
+	static int move(long data) {
+		return (int) (data >>> 42) & ((1 << MOVE_BITS) - 1);
+	}
+
+	/**
+	 * @param bytes The most memory to use.
+	 * @return The largest power of two entries that fits, and at least one.
+	 */
+	private static long entries(long bytes) {
+		return Long.highestOneBit(Math.max(ENTRY, bytes) / ENTRY);
+	}
+}